@@ -1,15 +1,98 @@
 package com.codewithmosh.store.admin;
 
+import com.codewithmosh.store.common.ErrorDto;
+import com.codewithmosh.store.orders.DailyRevenueDto;
+import com.codewithmosh.store.orders.InvalidReportRangeException;
+import com.codewithmosh.store.orders.PaymentStatus;
+import com.codewithmosh.store.orders.ProductSalesDto;
+import com.codewithmosh.store.orders.SalesRollup;
+import com.codewithmosh.store.products.ProductExportService;
+import com.codewithmosh.store.products.ProductImportReportDto;
+import com.codewithmosh.store.products.ProductImportService;
+import lombok.AllArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+@AllArgsConstructor
 @RestController
 @RequestMapping("/admin")
 public class AdminController {
 
+    private final ProductExportService productExportService;
+    private final ProductImportService productImportService;
+    private final SalesRollup salesRollup;
+
     @GetMapping("/hello")
     public String sayHello(){
         return "Hello Admin!";
     }
+
+    @GetMapping("/products/export")
+    public ResponseEntity<StreamingResponseBody> exportProducts(
+            @RequestParam(required = false, defaultValue = "false", name = "gzip") boolean gzip
+    )
+    {
+        var fileName = gzip ? "products.ndjson.gz" : "products.ndjson";
+        var contentType = gzip ? "application/gzip" : "application/x-ndjson";
+        StreamingResponseBody body = out -> productExportService.exportNdjson(out, gzip);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(contentType))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"")
+                .body(body);
+    }
+
+    // report serviti dalle tabelle di aggregati di SalesRollup, nessuna scansione di orders
+    @GetMapping("/reports/revenue")
+    public List<DailyRevenueDto> revenue(
+            @RequestParam(name = "from") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(name = "to") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to
+    )
+    {
+        return salesRollup.getRevenue(from, to);
+    }
+
+    @GetMapping("/reports/top-products")
+    public List<ProductSalesDto> topProducts(
+            @RequestParam(required = false, defaultValue = "10", name = "limit") int limit,
+            @RequestParam(required = false, defaultValue = "revenue", name = "by") String by
+    )
+    {
+        return salesRollup.getTopProducts(Math.max(1, Math.min(limit, 100)), "quantity".equalsIgnoreCase(by));
+    }
+
+    @GetMapping("/reports/order-status")
+    public Map<PaymentStatus, Long> orderStatusCounts() {
+        return salesRollup.getOrderCounts();
+    }
+
+    // il body viene letto in streaming, senza caricare tutto il file in memoria
+    @PostMapping(value = "/products/import", consumes = "text/csv")
+    public ProductImportReportDto importProductsCsv(InputStream body) throws IOException {
+        return productImportService.importCsv(body);
+    }
+
+    @PostMapping(value = "/products/import", consumes = "application/x-ndjson")
+    public ProductImportReportDto importProductsNdjson(InputStream body) throws IOException {
+        return productImportService.importNdjson(body);
+    }
+
+    @ExceptionHandler(InvalidReportRangeException.class)
+    public ResponseEntity<ErrorDto> handleInvalidReportRangeException(InvalidReportRangeException e) {
+        return ResponseEntity.badRequest().body(new ErrorDto(e.getMessage()));
+    }
 }
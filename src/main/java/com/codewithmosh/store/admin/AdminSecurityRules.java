@@ -12,6 +12,9 @@ public class AdminSecurityRules implements SecurityRules {
     @Override
     public void configure(AuthorizeHttpRequestsConfigurer<HttpSecurity>.AuthorizationManagerRequestMatcherRegistry registry) {
         registry.requestMatchers("/admin/**").hasRole(Role.ADMIN.name());
+        // metriche (hit/miss della cache, ecc.) solo per gli admin
+        registry.requestMatchers("/actuator/health").permitAll();
+        registry.requestMatchers("/actuator/**").hasRole(Role.ADMIN.name());
 
     }
 }
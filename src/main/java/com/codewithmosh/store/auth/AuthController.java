@@ -1,7 +1,6 @@
 package com.codewithmosh.store.auth;
 
 import com.codewithmosh.store.users.UserDto;
-import com.codewithmosh.store.users.UserMapper;
 import com.codewithmosh.store.users.UserRepository;
 import jakarta.servlet.http.Cookie;
 import jakarta.servlet.http.HttpServletResponse;
@@ -21,7 +20,6 @@ import org.springframework.web.bind.annotation.*;
 public class AuthController {
 
     private final JwtConfig jwtConfig;
-    private final UserMapper userMapper;
     private final AuthService authService;
 
     @PostMapping("/login")
@@ -60,7 +58,7 @@ public class AuthController {
             return ResponseEntity.notFound().build();
         }
 
-        return ResponseEntity.ok().body(userMapper.toDto(user));
+        return ResponseEntity.ok().body(new UserDto(user.getId(), user.getName(), user.getEmail()));
     }
 
 
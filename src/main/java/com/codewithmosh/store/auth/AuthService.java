@@ -21,10 +21,17 @@ public class AuthService {
     private final AuthenticationManager authenticationManager;
     private final JwtService jwtService;
 
-    public User getCurrentUser(){
+    public CurrentUser getCurrentUser(){
         var authentication =  SecurityContextHolder.getContext().getAuthentication();
-        var userId = (Long) authentication.getPrincipal();
-        return userRepository.findById(userId).orElse(null);
+        if (authentication == null || !(authentication.getPrincipal() instanceof CurrentUser currentUser))
+            return null;
+        return currentUser;
+    }
+
+    // per le associazioni (es. il customer di un ordine) basta un proxy con l id: nessuna select
+    public User getCurrentUserReference(){
+        var currentUser = getCurrentUser();
+        return currentUser == null ? null : userRepository.getReferenceById(currentUser.getId());
     }
 
     public LoginResponse login(LoginUserRequest request) {
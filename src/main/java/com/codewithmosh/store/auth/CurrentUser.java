@@ -0,0 +1,22 @@
+package com.codewithmosh.store.auth;
+
+import com.codewithmosh.store.users.Role;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+// principal della richiesta autenticata, costruito dai claim del token: niente query per sapere chi è l utente.
+// i dati sono quelli al momento del login (al massimo vecchi quanto l access token)
+@AllArgsConstructor
+@EqualsAndHashCode
+@Getter
+public class CurrentUser {
+    private Long id;
+    private String email;
+    private String name;
+    private Role role;
+
+    static CurrentUser from(Jwt jwt) {
+        return new CurrentUser(jwt.getUserId(), jwt.getEmail(), jwt.getName(), jwt.getRole());
+    }
+}
@@ -39,8 +39,9 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
         //arrivato a sto punto il token è valido e posso autenticare l utente
         //stavolta a diffenza del login per l oggetto authentication mi prendo l email dal token per non fare query per ottenerla dal db
+        //il principal è uno snapshot dei claim (id, email, nome, ruolo): chi ne ha bisogno non deve caricare lo User
         var authentication = new UsernamePasswordAuthenticationToken(
-                jwt.getUserId(),
+                CurrentUser.from(jwt),
                 null,
                 List.of(new SimpleGrantedAuthority("ROLE_" +  jwt.getRole()))
         );
@@ -0,0 +1,72 @@
+package com.codewithmosh.store.carts;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDate;
+
+// cancella i carrelli creati piu di maxAgeDays giorni fa (gli item vanno via con l ON DELETE CASCADE).
+// lavora a batch piccoli con una pausa tra uno e l altro, cosi nessuna transazione tiene lock a lungo
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "carts.reaper.enabled", havingValue = "true")
+public class AbandonedCartReaper {
+
+    private final CartRepository cartRepository;
+    private final int maxAgeDays;
+    private final int batchSize;
+    private final Duration pause;
+    private final Counter reapedCounter;
+    private final Timer reaperTimer;
+
+    public AbandonedCartReaper(CartRepository cartRepository,
+                               MeterRegistry meterRegistry,
+                               @Value("${carts.reaper.maxAgeDays:30}") int maxAgeDays,
+                               @Value("${carts.reaper.batchSize:1000}") int batchSize,
+                               @Value("${carts.reaper.pause:200ms}") Duration pause) {
+        this.cartRepository = cartRepository;
+        this.maxAgeDays = maxAgeDays;
+        this.batchSize = batchSize;
+        this.pause = pause;
+        this.reapedCounter = Counter.builder("carts.reaper.deleted")
+                .description("abandoned carts deleted by the reaper")
+                .register(meterRegistry);
+        this.reaperTimer = Timer.builder("carts.reaper.duration")
+                .description("time taken by a reaper run")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(cron = "${carts.reaper.cron:0 0 3 * * *}")
+    public void reap() {
+        reaperTimer.record(() -> {
+            var cutoff = LocalDate.now().minusDays(maxAgeDays);
+            long total = 0;
+            int deleted;
+            do {
+                deleted = cartRepository.deleteCreatedBefore(cutoff, batchSize);
+                total += deleted;
+                reapedCounter.increment(deleted);
+                if (deleted == batchSize && !pause())
+                    break;
+            } while (deleted == batchSize);
+            log.info("reaped {} carts created before {}", total, cutoff);
+        });
+    }
+
+    private boolean pause() {
+        try {
+            Thread.sleep(pause.toMillis());
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
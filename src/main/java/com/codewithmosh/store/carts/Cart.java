@@ -1,10 +1,14 @@
 package com.codewithmosh.store.carts;
 
+import com.codewithmosh.store.common.Money;
+import com.codewithmosh.store.common.UuidV7Generator;
 import com.codewithmosh.store.products.Product;
 import jakarta.persistence.*;
 
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
+import org.hibernate.annotations.UuidGenerator;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
@@ -18,21 +22,43 @@ import java.util.UUID;
 @Table(name = "carts")
 public class Cart {
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID) //lo settiamo come UUID
+    @UuidGenerator(algorithm = UuidV7Generator.class) //UUID v7, ordinati nel tempo
     @Column(name = "id")
     private UUID id;
 
     @Column(name = "date", insertable = false, updatable = false) //con insertable e updatable diciamo ad hibernate di ignorare il campo e generare l sql
     private LocalDate date;
 
+    @Version
+    @Column(name = "version")
+    private Long version;
+
     @OneToMany(mappedBy = "cart", cascade = CascadeType.MERGE, orphanRemoval = true)
     private Set<CartItem> items = new LinkedHashSet<>();
 
+    // totale in centesimi, aggiornato a ogni modifica degli item; -1 finchè non viene calcolato la prima volta
+    @Transient
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private long totalCents = -1;
+
+    public long getTotalCents() {
+        if (totalCents < 0) {
+            long total = 0;
+            for (var item : items)
+                total += item.getTotalCents();
+            totalCents = total;
+        }
+        return totalCents;
+    }
+
     public BigDecimal getTotalPrice() {
-        return items
-                .stream()
-                .map(CartItem::getTotalPrice)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        return Money.toBigDecimal(getTotalCents());
+    }
+
+    void itemTotalChanged(long deltaCents) {
+        if (totalCents >= 0)
+            totalCents += deltaCents;
     }
 
     public CartItem getItem(Long productId) {
@@ -40,34 +66,86 @@ public class Cart {
     }
 
     public CartItem addItem(Product product){
+        return addItem(product, 1);
+    }
+
+    public CartItem addItem(Product product, int quantity){
         var cartItem = getItem(product.getId());
         if (cartItem != null){
-            cartItem.setQuantity(cartItem.getQuantity() + 1);
+            cartItem.setQuantity(cartItem.getQuantity() + quantity);
         }
         else  {
             cartItem = new CartItem();
             cartItem.setProduct(product);
-            cartItem.setQuantity(1);
+            cartItem.setQuantity(quantity);
             cartItem.setCart(this);
             items.add(cartItem);
+            itemTotalChanged(cartItem.getTotalCents());
         }
         return cartItem;
     }
 
+    public CartItem setItemQuantity(Product product, int quantity){
+        var cartItem = getItem(product.getId());
+        if (cartItem == null)
+            return addItem(product, quantity);
+
+        cartItem.setQuantity(quantity);
+        return cartItem;
+    }
+
     public void removeItem(Long productId){
         var cartItem = getItem(productId);
         if (cartItem != null) {
             items.remove(cartItem);
             cartItem.setCart(null);
+            itemTotalChanged(-cartItem.getTotalCents());
         }
     }
 
     public void clearItems(){
         items.clear();
+        totalCents = 0;
     }
 
     public boolean isEmpty(){
         return items.isEmpty();
     }
 
+    // il prodotto è cambiato (es. il prezzo): l item punta alla versione nuova e il totale si ricalcola
+    void refreshProduct(Product product) {
+        var cartItem = getItem(product.getId());
+        if (cartItem != null) {
+            cartItem.setProduct(product);
+            totalCents = -1;
+        }
+    }
+
+    // copia per il write-behind: stessi id, versione e quantità, ma nessun oggetto condiviso con il carrello in cache
+    Cart snapshot() {
+        var copy = new Cart();
+        copy.id = id;
+        copy.date = date;
+        copy.version = version;
+        for (var item : items) {
+            var itemCopy = new CartItem();
+            itemCopy.setId(item.getId());
+            itemCopy.setProduct(item.getProduct());
+            itemCopy.setQuantity(item.getQuantity());
+            itemCopy.setCart(copy);
+            copy.items.add(itemCopy);
+        }
+        return copy;
+    }
+
+    // dopo la scrittura di uno snapshot: gli item nuovi prendono l id generato e la versione segue quella del db
+    void persisted(Cart saved) {
+        version = saved.version;
+        for (var savedItem : saved.items) {
+            var cartItem = getItem(savedItem.getProduct().getId());
+            if (cartItem != null && cartItem.getId() == null)
+                cartItem.setId(savedItem.getId());
+        }
+    }
+
 }
\ No newline at end of file
@@ -41,6 +41,16 @@ public class CartController {
         return ResponseEntity.status(HttpStatus.CREATED).body(cartItemDto);
     }
 
+    @PatchMapping("/{cartId}/items")
+    @Operation(summary = "applies a list of add/set/remove operations to the cart in one transaction")
+    public CartDto updateCartItems(
+            @PathVariable UUID cartId,
+            @Valid @RequestBody UpdateCartItemsRequest request
+    )
+    {
+        return cartService.updateCartItems(cartId, request.getOperations());
+    }
+
     @GetMapping("/{cartId}")
     public ResponseEntity<CartDto> getCart(
             @PathVariable UUID cartId
@@ -93,6 +103,12 @@ public class CartController {
                 Map.of("error: ", "product not found in the cart"));
     }
 
+    @ExceptionHandler(CartItemQuantityExceededException.class)
+    public ResponseEntity<Map<String,String>> handleCartItemQuantityExceeded(){
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(
+                Map.of("error: ", "quantity must be less then " + CartService.MAX_ITEM_QUANTITY));
+    }
+
     @ExceptionHandler(CartItemNotFoundException.class)
     public ResponseEntity<Map<String,String>> handleCartItemNotFound(){
         return ResponseEntity.status(HttpStatus.NOT_FOUND).body(
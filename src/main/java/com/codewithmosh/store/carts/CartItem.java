@@ -1,7 +1,9 @@
 package com.codewithmosh.store.carts;
 
+import com.codewithmosh.store.common.Money;
 import com.codewithmosh.store.products.Product;
 import jakarta.persistence.*;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
 
@@ -17,7 +19,7 @@ public class CartItem {
     @Column(name = "id")
     private Long id;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "cart_id")
     private Cart cart;
 
@@ -26,10 +28,39 @@ public class CartItem {
     private Product product;
 
     @Column(name = "quantity")
+    @Setter(AccessLevel.NONE)
     private Integer quantity;
 
+    // prezzo del prodotto in centesimi, calcolato al primo uso (hibernate non passa dai setter)
+    @Transient
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private long unitPriceCents = -1;
+
+    public void setProduct(Product product) {
+        this.product = product;
+        this.unitPriceCents = -1;
+    }
+
+    // tiene allineato il totale del carrello senza ricalcolarlo da capo
+    public void setQuantity(Integer quantity) {
+        if (cart != null && this.quantity != null)
+            cart.itemTotalChanged(getUnitPriceCents() * (quantity - this.quantity));
+        this.quantity = quantity;
+    }
+
+    public long getUnitPriceCents() {
+        if (unitPriceCents < 0)
+            unitPriceCents = Money.toCents(product.getPrice());
+        return unitPriceCents;
+    }
+
+    public long getTotalCents() {
+        return getUnitPriceCents() * quantity;
+    }
+
     public BigDecimal getTotalPrice(){
-        return product.getPrice().multiply(BigDecimal.valueOf(quantity));
+        return Money.toBigDecimal(getTotalCents());
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,26 @@
+package com.codewithmosh.store.carts;
+
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+
+@Data
+public class CartItemOperation {
+
+    public enum Type {
+        ADD,    // aggiunge quantity unità (default 1)
+        SET,    // imposta la quantità, creando l item se manca
+        REMOVE
+    }
+
+    @NotNull(message = "op must be provided")
+    private Type op;
+
+    @NotNull(message = "productId must be provided")
+    private Long productId;
+
+    @Min(value = 1, message = "quantity must be greaten then 1")
+    @Max(value = 100, message = "quantity must be less then 100")
+    private Integer quantity;
+}
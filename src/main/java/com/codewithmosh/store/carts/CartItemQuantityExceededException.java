@@ -0,0 +1,4 @@
+package com.codewithmosh.store.carts;
+
+public class CartItemQuantityExceededException extends RuntimeException {
+}
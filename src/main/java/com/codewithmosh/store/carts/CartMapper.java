@@ -1,13 +1,14 @@
 package com.codewithmosh.store.carts;
 
+import com.codewithmosh.store.common.Money;
 import org.mapstruct.Mapper;
 import org.mapstruct.Mapping;
 
-@Mapper(componentModel = "spring")
+@Mapper(componentModel = "spring", imports = Money.class)
 public interface CartMapper {
-    @Mapping(target = "totalPrice", expression = "java(cart.getTotalPrice())")
+    @Mapping(target = "totalPrice", expression = "java(Money.toBigDecimal(cart.getTotalCents()))")
     CartDto toDto(Cart cart);
 
-    @Mapping(target = "totalPrice", expression = "java(cartItem.getTotalPrice())")
+    @Mapping(target = "totalPrice", expression = "java(Money.toBigDecimal(cartItem.getTotalCents()))")
     CartItemDto toDto(CartItem cartItem);
 }
@@ -1,8 +1,44 @@
 package com.codewithmosh.store.carts;
 
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDate;
+import java.util.Optional;
 import java.util.UUID;
 
 public interface CartRepository extends JpaRepository<Cart, UUID> {
-}
\ No newline at end of file
+
+    // carrello, item, prodotti e categorie in un solo select: senza il grafo sono 1 + 1 + N query
+    @EntityGraph(attributePaths = {"items", "items.product", "items.product.category"})
+    Optional<Cart> findWithItemsById(UUID id);
+
+    // gli statement atomici sugli item non passano dall entity: la versione va alzata a mano
+    @Modifying
+    @Query("UPDATE Cart c SET c.version = c.version + 1 WHERE c.id = :id")
+    int incrementVersion(@Param("id") UUID id);
+
+    // aggiunta atomica: un solo statement, niente read-modify-write sulla quantità e niente conflitti sul vincolo unique
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = "INSERT INTO cart_items (cart_id, product_id, quantity) VALUES (:cartId, :productId, 1) " +
+            "ON DUPLICATE KEY UPDATE quantity = quantity + 1", nativeQuery = true)
+    int upsertItem(@Param("cartId") byte[] cartId, @Param("productId") Long productId);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE CartItem i SET i.quantity = :quantity WHERE i.cart.id = :cartId AND i.product.id = :productId")
+    int updateItemQuantity(@Param("cartId") UUID cartId, @Param("productId") Long productId, @Param("quantity") Integer quantity);
+
+    // un batch del reaper: ogni chiamata è una transazione breve
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM carts WHERE date < :cutoff LIMIT :limit", nativeQuery = true)
+    int deleteCreatedBefore(@Param("cutoff") LocalDate cutoff, @Param("limit") int limit);
+
+    @Query("SELECT i FROM CartItem i JOIN FETCH i.product p LEFT JOIN FETCH p.category " +
+            "WHERE i.cart.id = :cartId AND i.product.id = :productId")
+    Optional<CartItem> findItem(@Param("cartId") UUID cartId, @Param("productId") Long productId);
+}
@@ -1,84 +1,114 @@
 package com.codewithmosh.store.carts;
 
+import com.codewithmosh.store.products.Product;
 import com.codewithmosh.store.products.ProductNotFoundException;
 import com.codewithmosh.store.products.ProductRepository;
 import lombok.AllArgsConstructor;
 import org.springframework.stereotype.Service;
 
+import java.util.HashMap;
+import java.util.List;
 import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @AllArgsConstructor
 @Service
 public class CartService {
-    private final CartRepository cartRepository;
+    private final CartStore cartStore;
     private final ProductRepository productRepository;
     private final CartMapper cartMapper;
 
 
     public CartDto createCart() {
-        var cart = new Cart();
-        cartRepository.save(cart);
+        var cart = cartStore.create();
         return cartMapper.toDto(cart);
     }
 
 
     public CartItemDto toDto(UUID cartId, Long productId) {
-        var cart = cartRepository.findById(cartId).orElse(null);
-        if (cart == null)
-            throw new CartNotFoundException();
-
         var product = productRepository.findById(productId).orElse(null);
         if (product == null)
             throw new ProductNotFoundException();
 
-        var cartItem = cart.addItem(product);
-        cartRepository.save(cart);
+        var cartItem = cartStore.addItem(cartId, product);
         return cartMapper.toDto(cartItem);
     }
 
 
-    public CartDto getCart(UUID cartId) {
-        var cart =  cartRepository.findById(cartId).orElse(null);
-        if (cart == null)
-            throw new CartNotFoundException();
+    // lo stesso tetto di UpdateCartItemRequest, applicato alla quantità risultante
+    static final int MAX_ITEM_QUANTITY = 100;
 
-        return cartMapper.toDto(cart);
+    // tutte le operazioni in una sola transazione, con un unica query IN per i prodotti
+    public CartDto updateCartItems(UUID cartId, List<CartItemOperation> operations) {
+        var productIds = operations.stream()
+                .filter(operation -> operation.getOp() != CartItemOperation.Type.REMOVE)
+                .map(CartItemOperation::getProductId)
+                .collect(Collectors.toSet());
+        var products = productRepository.findAllWithCategoryByIdIn(productIds).stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+        if (products.size() < productIds.size())
+            throw new ProductNotFoundException();
+
+        return cartStore.update(cartId, cart -> {
+            checkQuantities(cart, operations);
+            for (var operation : operations) {
+                var quantity = operation.getQuantity() == null ? 1 : operation.getQuantity();
+                switch (operation.getOp()) {
+                    case ADD -> cart.addItem(products.get(operation.getProductId()), quantity);
+                    case SET -> cart.setItemQuantity(products.get(operation.getProductId()), quantity);
+                    case REMOVE -> cart.removeItem(operation.getProductId());
+                }
+            }
+            return cartMapper.toDto(cart);
+        });
     }
 
 
-    public CartItemDto updateCartItem(UUID cartId, Long productId, Integer quantity) {
-        var cart = cartRepository.findById(cartId).orElse(null);
-        if (cart == null)
-            throw new CartNotFoundException();
+    // simula le operazioni prima di applicarne una: se una quantità supera il tetto il carrello resta com era
+    private static void checkQuantities(Cart cart, List<CartItemOperation> operations) {
+        var quantities = new HashMap<Long, Integer>();
+        for (var operation : operations) {
+            var productId = operation.getProductId();
+            var quantity = operation.getQuantity() == null ? 1 : operation.getQuantity();
+            var resulting = switch (operation.getOp()) {
+                case ADD -> quantities.computeIfAbsent(productId, id -> currentQuantity(cart, id)) + quantity;
+                case SET -> quantity;
+                case REMOVE -> 0;
+            };
+            if (resulting > MAX_ITEM_QUANTITY)
+                throw new CartItemQuantityExceededException();
+            quantities.put(productId, resulting);
+        }
+    }
 
+    private static int currentQuantity(Cart cart, Long productId) {
         var cartItem = cart.getItem(productId);
-        if (cartItem == null)
-           throw new CartItemNotFoundException();
+        return cartItem == null ? 0 : cartItem.getQuantity();
+    }
 
 
-        cartItem.setQuantity(quantity);
-        cartRepository.save(cart);
+    public CartDto getCart(UUID cartId) {
+        return cartStore.read(cartId, cartMapper::toDto);
+    }
+
+
+    public CartItemDto updateCartItem(UUID cartId, Long productId, Integer quantity) {
+        var cartItem = cartStore.setItemQuantity(cartId, productId, quantity);
         return cartMapper.toDto(cartItem);
     }
 
 
     public void deleteCartItem(UUID cartId, Long productId) {
-        var cart = cartRepository.findById(cartId).orElse(null);
-        if (cart == null)
-            throw new CartNotFoundException();
-
-        cart.removeItem(productId);
-        cartRepository.save(cart);
+        cartStore.update(cartId, cart -> {
+            cart.removeItem(productId);
+            return null;
+        });
     }
 
 
     public void clearCart(UUID cartId) {
-        var cart = cartRepository.findById(cartId).orElse(null);
-        if (cart == null)
-            throw new CartNotFoundException();
-
-        cart.clearItems();
-        cartRepository.save(cart);
+        cartStore.clear(cartId);
     }
 
 }
@@ -0,0 +1,29 @@
+package com.codewithmosh.store.carts;
+
+import com.codewithmosh.store.products.Product;
+
+import java.util.UUID;
+import java.util.function.Function;
+
+// dove vivono i carrelli: direttamente sul database (default) oppure in memoria con scrittura differita.
+// si sceglie con carts.store = database | write-behind
+public interface CartStore {
+    Cart create();
+
+    // read e update lanciano CartNotFoundException se il carrello non esiste
+    <T> T read(UUID cartId, Function<Cart, T> reader);
+
+    <T> T update(UUID cartId, Function<Cart, T> mutation);
+
+    // aggiunge un unità del prodotto (o crea l item) e ritorna l item risultante
+    CartItem addItem(UUID cartId, Product product);
+
+    // lancia CartItemNotFoundException se il prodotto non è nel carrello
+    CartItem setItemQuantity(UUID cartId, Long productId, Integer quantity);
+
+    // svuota il carrello; dentro una transazione (es. il checkout) l effetto non deve precederne il commit
+    void clear(UUID cartId);
+
+    // rende durevole subito lo stato del carrello (es. prima del checkout)
+    void flush(UUID cartId);
+}
@@ -0,0 +1,138 @@
+package com.codewithmosh.store.carts;
+
+import com.codewithmosh.store.common.StripedLock;
+import com.codewithmosh.store.common.UuidBytes;
+import com.codewithmosh.store.products.Product;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+// le modifiche a uno stesso carrello sono serializzate: nel nodo con un lock per carrello (striped),
+// tra nodi diversi con la @Version di Cart. Il lock va preso fuori dalla transazione, cosi il commit
+// avviene prima che un altra richiesta sullo stesso carrello possa leggerlo
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "carts.store", havingValue = "database", matchIfMissing = true)
+public class DatabaseCartStore implements CartStore {
+
+    private final CartRepository cartRepository;
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+    private final StripedLock locks;
+    private final int maxAttempts;
+
+    public DatabaseCartStore(CartRepository cartRepository,
+                             EntityManager entityManager,
+                             PlatformTransactionManager transactionManager,
+                             @Value("${carts.locking.stripes:256}") int stripes,
+                             @Value("${carts.locking.maxAttempts:3}") int maxAttempts) {
+        this.cartRepository = cartRepository;
+        this.entityManager = entityManager;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.locks = new StripedLock(stripes);
+        this.maxAttempts = maxAttempts;
+    }
+
+    @Override
+    @Transactional
+    public Cart create() {
+        return cartRepository.save(new Cart());
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public <T> T read(UUID cartId, Function<Cart, T> reader) {
+        var cart = cartRepository.findWithItemsById(cartId).orElseThrow(CartNotFoundException::new);
+        return reader.apply(cart);
+    }
+
+    @Override
+    public <T> T update(UUID cartId, Function<Cart, T> mutation) {
+        return locked(cartId, () -> {
+            var cart = cartRepository.findWithItemsById(cartId).orElseThrow(CartNotFoundException::new);
+            // la versione viene incrementata anche se cambiano solo gli item
+            entityManager.lock(cart, LockModeType.OPTIMISTIC_FORCE_INCREMENT);
+            var result = mutation.apply(cart);
+            cartRepository.save(cart);
+            return result;
+        });
+    }
+
+    @Override
+    public CartItem addItem(UUID cartId, Product product) {
+        return locked(cartId, () -> {
+            try {
+                cartRepository.upsertItem(UuidBytes.toBytes(cartId), product.getId());
+            } catch (DataIntegrityViolationException e) {
+                // il prodotto è gia stato verificato, quindi la foreign key che fallisce è quella del carrello
+                throw new CartNotFoundException();
+            }
+            cartRepository.incrementVersion(cartId);
+            return cartRepository.findItem(cartId, product.getId()).orElseThrow(CartItemNotFoundException::new);
+        });
+    }
+
+    @Override
+    public CartItem setItemQuantity(UUID cartId, Long productId, Integer quantity) {
+        return locked(cartId, () -> {
+            var updated = cartRepository.updateItemQuantity(cartId, productId, quantity);
+            if (updated == 0) {
+                if (!cartRepository.existsById(cartId))
+                    throw new CartNotFoundException();
+                throw new CartItemNotFoundException();
+            }
+            cartRepository.incrementVersion(cartId);
+            return cartRepository.findItem(cartId, productId).orElseThrow(CartItemNotFoundException::new);
+        });
+    }
+
+    @Override
+    public void clear(UUID cartId) {
+        // partecipa alla transazione del chiamante: un rollback del checkout lascia il carrello com era
+        update(cartId, cart -> {
+            cart.clearItems();
+            return null;
+        });
+    }
+
+    @Override
+    public void flush(UUID cartId) {
+        // ogni update è gia sul database
+    }
+
+    // se un altro nodo ha modificato il carrello nel frattempo si rilegge e si riapplica la modifica.
+    // dentro una transazione gia aperta (es. il checkout) non si può ripetere: l errore sale al chiamante
+    private <T> T locked(UUID cartId, Supplier<T> work) {
+        var lock = locks.get(cartId);
+        lock.lock();
+        try {
+            if (TransactionSynchronizationManager.isActualTransactionActive())
+                return transactionTemplate.execute(status -> work.get());
+
+            for (var attempt = 1; ; attempt++) {
+                try {
+                    return transactionTemplate.execute(status -> work.get());
+                } catch (OptimisticLockingFailureException e) {
+                    if (attempt >= maxAttempts)
+                        throw e;
+                    log.debug("concurrent update on cart {}, retrying ({}/{})", cartId, attempt, maxAttempts);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+}
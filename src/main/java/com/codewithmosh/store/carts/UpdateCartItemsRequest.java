@@ -0,0 +1,16 @@
+package com.codewithmosh.store.carts;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class UpdateCartItemsRequest {
+
+    @NotEmpty(message = "operations must be provided")
+    @Size(max = 100, message = "at most 100 operations per request")
+    private List<@Valid CartItemOperation> operations;
+}
@@ -0,0 +1,416 @@
+package com.codewithmosh.store.carts;
+
+import com.codewithmosh.store.products.Product;
+import com.codewithmosh.store.products.ProductChangedEvent;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+// i carrelli caldi restano in memoria: le modifiche si applicano qui e vengono scritte su carts/cart_items
+// in batch da un job schedulato (al massimo flushInterval di ritardo), subito prima del checkout e allo shutdown.
+// usa un EntityManager proprio, cosi i carrelli in cache sono sempre detached e non finiscono
+// nel persistence context della richiesta (open-in-view)
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "carts.store", havingValue = "write-behind")
+public class WriteBehindCartStore implements CartStore {
+
+    private final EntityManagerFactory entityManagerFactory;
+    private final int batchSize;
+    private final long idleTimeoutNanos;
+    private final int maxCarts;
+    private final Map<UUID, Slot> slots = new ConcurrentHashMap<>();
+    private final AtomicBoolean evicting = new AtomicBoolean();
+
+    private static class Slot {
+        private final ReentrantLock lock = new ReentrantLock();
+        // una sola scrittura alla volta per carrello: due snapshot della stessa versione andrebbero in conflitto
+        private final ReentrantLock flushLock = new ReentrantLock();
+        private Cart cart;
+        private boolean dirty;
+        private long generation; // cresce a ogni modifica: dice se il carrello è cambiato durante la scrittura
+        private boolean evicted;
+        private volatile long lastAccess = System.nanoTime();
+
+        Slot(Cart cart) {
+            this.cart = cart;
+        }
+    }
+
+    public WriteBehindCartStore(EntityManagerFactory entityManagerFactory,
+                                @Value("${carts.writeBehind.batchSize:100}") int batchSize,
+                                @Value("${carts.writeBehind.idleTimeout:30m}") Duration idleTimeout,
+                                @Value("${carts.writeBehind.maxCarts:100000}") int maxCarts) {
+        this.entityManagerFactory = entityManagerFactory;
+        this.batchSize = batchSize;
+        this.idleTimeoutNanos = idleTimeout.toNanos();
+        this.maxCarts = maxCarts;
+    }
+
+    @Override
+    public Cart create() {
+        // la creazione va subito sul database: l id lo genera hibernate all insert
+        var entityManager = entityManagerFactory.createEntityManager();
+        try {
+            entityManager.getTransaction().begin();
+            var cart = new Cart();
+            entityManager.persist(cart);
+            entityManager.getTransaction().commit();
+            slots.put(cart.getId(), new Slot(cart));
+            evictOverflow();
+            return cart;
+        } finally {
+            entityManager.close();
+        }
+    }
+
+    @Override
+    public <T> T read(UUID cartId, Function<Cart, T> reader) {
+        var slot = lockSlot(cartId);
+        try {
+            return reader.apply(slot.cart);
+        } finally {
+            slot.lock.unlock();
+        }
+    }
+
+    @Override
+    public <T> T update(UUID cartId, Function<Cart, T> mutation) {
+        var slot = lockSlot(cartId);
+        try {
+            var result = mutation.apply(slot.cart);
+            slot.dirty = true;
+            slot.generation++;
+            return result;
+        } finally {
+            slot.lock.unlock();
+        }
+    }
+
+    @Override
+    public CartItem addItem(UUID cartId, Product product) {
+        return update(cartId, cart -> cart.addItem(product));
+    }
+
+    @Override
+    public CartItem setItemQuantity(UUID cartId, Long productId, Integer quantity) {
+        return update(cartId, cart -> {
+            var cartItem = cart.getItem(productId);
+            if (cartItem == null)
+                throw new CartItemNotFoundException();
+            cartItem.setQuantity(quantity);
+            return cartItem;
+        });
+    }
+
+    @Override
+    public void clear(UUID cartId) {
+        // le modifiche qui non fanno parte della transazione del chiamante: il carrello si svuota
+        // solo se il checkout va a buon fine, altrimenti un rollback lascerebbe l ordine annullato e il carrello vuoto
+        afterCommit(() -> update(cartId, cart -> {
+            cart.clearItems();
+            return null;
+        }));
+    }
+
+    // il checkout legge il carrello dal database subito dopo: se la scrittura fallisce deve fallire anche lui
+    @Override
+    public void flush(UUID cartId) {
+        var slot = slots.get(cartId);
+        if (slot == null)
+            return;
+        slot.flushLock.lock();
+        try {
+            write(List.of(slot));
+        } catch (RuntimeException e) {
+            if (dropIfDeleted(slot))
+                throw new CartNotFoundException();
+            throw e;
+        } finally {
+            slot.flushLock.unlock();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${carts.writeBehind.flushInterval:1000}")
+    public void flushDirty() {
+        var batch = new ArrayList<Slot>(batchSize);
+        for (var slot : slots.values()) {
+            // un carrello gia in scrittura (es. dal checkout) si salta: è pulito o lo prende il giro dopo
+            if (slot.dirty && slot.flushLock.tryLock())
+                batch.add(slot);
+            if (batch.size() == batchSize) {
+                flush(batch);
+                batch.clear();
+            }
+        }
+        flush(batch);
+        evictIdle();
+        evictOverflow();
+    }
+
+    // i carrelli in cache tengono i Product con cui sono stati caricati: un cambio di prezzo va riportato qui,
+    // un prodotto cancellato sparisce anche dal carrello (sul database le righe cart_items vanno via in cascata)
+    @EventListener
+    public void onProductChanged(ProductChangedEvent event) {
+        var product = event.deleted() ? null : loadProduct(event.productId());
+        if (product == null && !event.deleted())
+            return;
+        for (var slot : slots.values()) {
+            slot.lock.lock();
+            try {
+                if (slot.cart == null || slot.evicted)
+                    continue;
+                if (product != null)
+                    slot.cart.refreshProduct(product);
+                else if (slot.cart.getItem(event.productId()) != null)
+                    slot.cart.removeItem(event.productId());
+            } finally {
+                slot.lock.unlock();
+            }
+        }
+    }
+
+    @PreDestroy
+    public void flushAll() {
+        flushDirty();
+    }
+
+    // ritorna lo slot gia bloccato; se nel frattempo è stato rimosso dalla cache lo ricarica
+    private Slot lockSlot(UUID cartId) {
+        while (true) {
+            var slot = slots.get(cartId);
+            if (slot == null) {
+                // prenoto la chiave con uno slot vuoto gia bloccato e carico fuori dalla mappa:
+                // computeIfAbsent terrebbe bloccato il bucket per tutta la query, cosi aspetta solo chi vuole questo carrello
+                var loading = new Slot(null);
+                loading.lock.lock();
+                slot = slots.putIfAbsent(cartId, loading);
+                if (slot == null)
+                    return load(cartId, loading);
+            }
+
+            slot.lock.lock();
+            if (!slot.evicted) {
+                slot.lastAccess = System.nanoTime();
+                return slot;
+            }
+            slot.lock.unlock();
+        }
+    }
+
+    private Slot load(UUID cartId, Slot loading) {
+        Cart cart = null;
+        try {
+            cart = load(cartId);
+        } finally {
+            if (cart == null) {
+                // chi aspettava sul lock trova lo slot scartato e riprova
+                loading.evicted = true;
+                slots.remove(cartId, loading);
+                loading.lock.unlock();
+            }
+        }
+        if (cart == null)
+            throw new CartNotFoundException();
+
+        loading.cart = cart;
+        evictOverflow();
+        return loading;
+    }
+
+    private Cart load(UUID cartId) {
+        var entityManager = entityManagerFactory.createEntityManager();
+        try {
+            return entityManager.createQuery(
+                            "SELECT c FROM Cart c LEFT JOIN FETCH c.items i LEFT JOIN FETCH i.product p LEFT JOIN FETCH p.category WHERE c.id = :id",
+                            Cart.class)
+                    .setParameter("id", cartId)
+                    .getResultStream()
+                    .findFirst()
+                    .orElse(null);
+        } finally {
+            entityManager.close();
+        }
+    }
+
+    private Product loadProduct(Long productId) {
+        var entityManager = entityManagerFactory.createEntityManager();
+        try {
+            return entityManager.createQuery(
+                            "SELECT p FROM Product p LEFT JOIN FETCH p.category WHERE p.id = :id", Product.class)
+                    .setParameter("id", productId)
+                    .getResultStream()
+                    .findFirst()
+                    .orElse(null);
+        } finally {
+            entityManager.close();
+        }
+    }
+
+    // gli slot arrivano con il flushLock gia preso e qui lo rilascio; gli errori si loggano e si riprova al giro dopo
+    private void flush(List<Slot> batch) {
+        try {
+            write(batch);
+        } catch (RuntimeException e) {
+            // un carrello cancellato nel frattempo (es. dal reaper) non deve bloccare tutto il batch:
+            // si riprova uno alla volta e quello che non esiste piu sul db viene scartato
+            for (var slot : batch) {
+                var failure = batch.size() > 1 ? tryWrite(slot) : e;
+                if (failure != null && !dropIfDeleted(slot))
+                    log.error("write-behind flush of cart {} failed, will retry", slot.cart.getId(), failure);
+            }
+        } finally {
+            batch.forEach(slot -> slot.flushLock.unlock());
+        }
+    }
+
+    private RuntimeException tryWrite(Slot slot) {
+        try {
+            write(List.of(slot));
+            return null;
+        } catch (RuntimeException e) {
+            return e;
+        }
+    }
+
+    // un unica transazione per batch. lo stato si copia sotto il lock di ogni carrello e si scrive fuori dal lock,
+    // cosi le richieste sugli stessi carrelli non aspettano il round trip con il database
+    private void write(List<Slot> batch) {
+        var snapshots = new ArrayList<Cart>(batch.size());
+        var generations = new long[batch.size()];
+        for (var i = 0; i < batch.size(); i++) {
+            var slot = batch.get(i);
+            slot.lock.lock();
+            try {
+                snapshots.add(slot.dirty ? slot.cart.snapshot() : null);
+                generations[i] = slot.generation;
+            } finally {
+                slot.lock.unlock();
+            }
+        }
+        if (snapshots.stream().allMatch(Objects::isNull))
+            return;
+
+        var merged = new ArrayList<Cart>(batch.size());
+        var entityManager = entityManagerFactory.createEntityManager();
+        try {
+            entityManager.getTransaction().begin();
+            for (var snapshot : snapshots)
+                merged.add(snapshot == null ? null : entityManager.merge(snapshot));
+            entityManager.getTransaction().commit();
+        } catch (RuntimeException e) {
+            if (entityManager.getTransaction().isActive())
+                entityManager.getTransaction().rollback();
+            throw e;
+        } finally {
+            entityManager.close();
+        }
+
+        // nuova versione e id dei nuovi item; resta dirty solo se è stato modificato durante la scrittura
+        for (var i = 0; i < batch.size(); i++) {
+            if (merged.get(i) == null)
+                continue;
+            var slot = batch.get(i);
+            slot.lock.lock();
+            try {
+                slot.cart.persisted(merged.get(i));
+                if (slot.generation == generations[i])
+                    slot.dirty = false;
+            } finally {
+                slot.lock.unlock();
+            }
+        }
+    }
+
+    private boolean dropIfDeleted(Slot slot) {
+        if (load(slot.cart.getId()) != null)
+            return false;
+        slot.lock.lock();
+        try {
+            slot.evicted = true;
+            slots.remove(slot.cart.getId(), slot);
+        } finally {
+            slot.lock.unlock();
+        }
+        log.warn("cart {} no longer exists, dropping its pending changes", slot.cart.getId());
+        return true;
+    }
+
+    // oltre maxCarts scarto i carrelli puliti usati meno di recente, fino a scendere al 90% del tetto.
+    // quelli con modifiche non scritte restano: usciranno dopo il prossimo flush
+    private void evictOverflow() {
+        if (slots.size() <= maxCarts || !evicting.compareAndSet(false, true))
+            return;
+        try {
+            record Candidate(UUID cartId, Slot slot, long lastAccess) {
+            }
+            slots.entrySet().stream()
+                    .map(entry -> new Candidate(entry.getKey(), entry.getValue(), entry.getValue().lastAccess))
+                    .sorted(Comparator.comparingLong(Candidate::lastAccess))
+                    .limit(slots.size() - maxCarts + maxCarts / 10)
+                    .forEach(candidate -> evictIfClean(candidate.cartId(), candidate.slot()));
+        } finally {
+            evicting.set(false);
+        }
+    }
+
+    private void evictIfClean(UUID cartId, Slot slot) {
+        if (!slot.lock.tryLock())
+            return;
+        try {
+            if (slot.dirty)
+                return;
+            slot.evicted = true;
+            slots.remove(cartId, slot);
+        } finally {
+            slot.lock.unlock();
+        }
+    }
+
+    private static void afterCommit(Runnable update) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            update.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                update.run();
+            }
+        });
+    }
+
+    private void evictIdle() {
+        var now = System.nanoTime();
+        slots.entrySet().removeIf(entry -> {
+            var slot = entry.getValue();
+            if (now - slot.lastAccess < idleTimeoutNanos || !slot.lock.tryLock())
+                return false;
+            try {
+                slot.evicted = !slot.dirty;
+                return slot.evicted;
+            } finally {
+                slot.lock.unlock();
+            }
+        });
+    }
+}
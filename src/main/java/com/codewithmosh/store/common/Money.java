@@ -0,0 +1,19 @@
+package com.codewithmosh.store.common;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+// importi in centesimi (long): i calcoli sui totali non allocano, BigDecimal solo verso db e json
+public final class Money {
+
+    private Money() {
+    }
+
+    public static long toCents(BigDecimal amount) {
+        return amount.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    public static BigDecimal toBigDecimal(long cents) {
+        return BigDecimal.valueOf(cents, 2);
+    }
+}
@@ -0,0 +1,60 @@
+package com.codewithmosh.store.common;
+
+import com.codewithmosh.store.auth.CurrentUser;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// ricorda chi ha scritto da poco: per una finestra di tempo le sue letture vanno sul primary,
+// cosi non vede dati vecchi a causa del ritardo di replica. la chiave è lo user autenticato,
+// altrimenti il carrello nel path (/carts/{cartId}): l indirizzo del client non va bene,
+// dietro il proxy di Railway è lo stesso per tutti
+public class ReadYourWritesTracker {
+    private static final int CLEANUP_THRESHOLD = 10_000;
+
+    private final long windowNanos;
+    private final Map<Object, Long> lastWrites = new ConcurrentHashMap<>();
+
+    public ReadYourWritesTracker(Duration window) {
+        this.windowNanos = window.toNanos();
+    }
+
+    public void recordWrite() {
+        var key = currentKey();
+        if (key == null)
+            return;
+
+        var now = System.nanoTime();
+        lastWrites.put(key, now);
+        if (lastWrites.size() > CLEANUP_THRESHOLD)
+            lastWrites.values().removeIf(writtenAt -> now - writtenAt > windowNanos);
+    }
+
+    public boolean hasRecentWrite() {
+        var key = currentKey();
+        if (key == null)
+            return false;
+
+        var writtenAt = lastWrites.get(key);
+        return writtenAt != null && System.nanoTime() - writtenAt <= windowNanos;
+    }
+
+    private static Object currentKey() {
+        var authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.isAuthenticated()
+                && !(authentication instanceof AnonymousAuthenticationToken))
+            return authentication.getPrincipal() instanceof CurrentUser user ? user.getId() : authentication.getPrincipal();
+
+        if (RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes
+                && attributes.getRequest().getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE) instanceof Map<?, ?> variables
+                && variables.get("cartId") != null)
+            return "cart:" + variables.get("cartId");
+        return null; // job in background, startup, richieste anonime senza carrello: niente stickiness
+    }
+}
@@ -0,0 +1,70 @@
+package com.codewithmosh.store.common;
+
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.Data;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.resource.jdbc.spi.PhysicalConnectionHandlingMode;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.Map;
+
+// attivo solo se è configurata una replica (spring.datasource.replica.url), altrimenti resta il datasource di default
+@Configuration
+@ConfigurationProperties(prefix = "spring.datasource.replica")
+@ConditionalOnProperty(prefix = "spring.datasource.replica", name = "url")
+@Data
+public class ReplicaDataSourceConfig {
+    private String url;
+    private String username;
+    private String password;
+    private Duration stickiness = Duration.ofSeconds(5); // finestra read-your-writes dopo una scrittura
+
+    // entrambi i pool ricevono spring.datasource.hikari.*, come il datasource di default (es. useCursorFetch)
+    @Bean
+    @ConfigurationProperties(prefix = "spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties primaryProperties) {
+        return primaryProperties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    @Bean
+    @ConfigurationProperties(prefix = "spring.datasource.hikari")
+    public HikariDataSource replicaDataSource() {
+        return DataSourceBuilder.create()
+                .type(HikariDataSource.class)
+                .url(url)
+                .username(username)
+                .password(password)
+                .build();
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(HikariDataSource primaryDataSource, HikariDataSource replicaDataSource) {
+        var routing = new ReplicaRoutingDataSource(new ReadYourWritesTracker(stickiness));
+        routing.setTargetDataSources(Map.of(
+                ReplicaRoutingDataSource.PRIMARY, primaryDataSource,
+                ReplicaRoutingDataSource.REPLICA, replicaDataSource));
+        routing.setDefaultTargetDataSource(primaryDataSource);
+        routing.afterPropertiesSet();
+        return new LazyConnectionDataSourceProxy(routing);
+    }
+
+    // con open-in-view la sessione hibernate dura tutta la richiesta e spring la configura per tenersi la connessione
+    // fino alla chiusura: una scrittura dopo una lettura read-only riuserebbe la connessione della replica.
+    // rilasciandola a fine transazione ogni transazione ripassa dal routing
+    @Bean
+    public HibernatePropertiesCustomizer releaseConnectionAfterTransaction() {
+        return properties -> properties.put(AvailableSettings.CONNECTION_HANDLING,
+                PhysicalConnectionHandlingMode.DELAYED_ACQUISITION_AND_RELEASE_AFTER_TRANSACTION);
+    }
+}
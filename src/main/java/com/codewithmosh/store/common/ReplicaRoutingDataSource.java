@@ -0,0 +1,39 @@
+package com.codewithmosh.store.common;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+// le transazioni @Transactional(readOnly = true) vanno sulla replica, tutto il resto sul primary.
+// va avvolto in un LazyConnectionDataSourceProxy, altrimenti la connessione viene presa
+// prima che la transazione sia marcata come read-only
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+    public static final String PRIMARY = "primary";
+    public static final String REPLICA = "replica";
+
+    private final ReadYourWritesTracker tracker;
+
+    public ReplicaRoutingDataSource(ReadYourWritesTracker tracker) {
+        this.tracker = tracker;
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        // fuori da una transazione (es. lazy load con open-in-view) si legge dal primary, ma non è una scrittura
+        if (!TransactionSynchronizationManager.isActualTransactionActive())
+            return PRIMARY;
+        if (TransactionSynchronizationManager.isCurrentTransactionReadOnly())
+            return tracker.hasRecentWrite() ? PRIMARY : REPLICA;
+
+        // la scrittura conta solo se arriva al commit: un rollback non ha niente da far leggere
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    tracker.recordWrite();
+                }
+            });
+        }
+        return PRIMARY;
+    }
+}
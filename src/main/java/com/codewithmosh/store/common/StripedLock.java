@@ -0,0 +1,26 @@
+package com.codewithmosh.store.common;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+// numero fisso di lock, scelti dall hash della chiave: stessa chiave -> stesso lock,
+// chiavi diverse quasi sempre su lock diversi, e la memoria non cresce con il numero di chiavi
+public class StripedLock {
+
+    private final ReentrantLock[] locks;
+
+    public StripedLock(int stripes) {
+        if (stripes <= 0)
+            throw new IllegalArgumentException("stripes must be positive");
+        // potenza di 2, cosi l indice è una maschera
+        var size = Integer.highestOneBit(stripes - 1) << 1;
+        locks = new ReentrantLock[Math.max(size, 1)];
+        for (var i = 0; i < locks.length; i++)
+            locks[i] = new ReentrantLock();
+    }
+
+    public ReentrantLock get(Object key) {
+        var hash = key.hashCode();
+        hash ^= hash >>> 16;
+        return locks[hash & (locks.length - 1)];
+    }
+}
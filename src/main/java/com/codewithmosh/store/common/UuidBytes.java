@@ -0,0 +1,18 @@
+package com.codewithmosh.store.common;
+
+import java.nio.ByteBuffer;
+import java.util.UUID;
+
+// gli UUID sono salvati come binary(16) (big-endian, come fa hibernate): serve per i parametri delle query native
+public final class UuidBytes {
+
+    private UuidBytes() {
+    }
+
+    public static byte[] toBytes(UUID uuid) {
+        return ByteBuffer.allocate(16)
+                .putLong(uuid.getMostSignificantBits())
+                .putLong(uuid.getLeastSignificantBits())
+                .array();
+    }
+}
@@ -0,0 +1,53 @@
+package com.codewithmosh.store.common;
+
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.uuid.UuidValueGenerator;
+
+import java.security.SecureRandom;
+import java.util.UUID;
+
+// UUID versione 7 (RFC 9562): 48 bit di timestamp in ms, poi 12 bit di contatore e 62 bit casuali.
+// salvati come binary(16) big-endian le chiavi nuove finiscono sempre in coda all indice della primary key,
+// invece di essere sparse in tutto il b-tree come le v4.
+// gli id dei carrelli sono anche il "segreto" per accedervi: i 62 bit casuali vengono da SecureRandom.
+// uso: @Id @UuidGenerator(algorithm = UuidV7Generator.class)
+//
+// migrazione: i carrelli esistenti tengono i loro id v4, non serve riscriverli. le v4 però sono casuali su tutto
+// lo spazio delle chiavi, quindi le v7 nuove non stanno in un intervallo a parte ma si mescolano a loro
+// (finiscono tutte nello stesso punto dell indice, subito dopo l ultima v7, con righe v4 sia prima che dopo),
+// e finche restano righe v4 l ordine per id non è cronologico. le v7 sono in coda all indice solo quando
+// il reaper (carts.reaper.maxAgeDays) ha cancellato i carrelli v4
+public class UuidV7Generator implements UuidValueGenerator {
+
+    private static final SecureRandom random = new SecureRandom();
+
+    private static long lastMillis;
+    private static int counter;
+
+    @Override
+    public UUID generateUuid(SharedSessionContractImplementor session) {
+        return next();
+    }
+
+    public static UUID next() {
+        long millis;
+        int sequence;
+        synchronized (UuidV7Generator.class) {
+            millis = Math.max(System.currentTimeMillis(), lastMillis);
+            if (millis == lastMillis && ++counter > 0xFFF) {
+                // contatore esaurito nello stesso ms: si passa al ms successivo, l ordine resta monotono
+                millis++;
+                counter = random.nextInt(0x800);
+            } else if (millis != lastMillis) {
+                // partenza casuale nella prima metà, cosi resta spazio per gli incrementi
+                counter = random.nextInt(0x800);
+            }
+            lastMillis = millis;
+            sequence = counter;
+        }
+
+        var msb = (millis << 16) | 0x7000L | sequence;
+        var lsb = (random.nextLong() & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L;
+        return new UUID(msb, lsb);
+    }
+}
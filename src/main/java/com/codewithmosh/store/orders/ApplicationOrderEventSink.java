@@ -0,0 +1,18 @@
+package com.codewithmosh.store.orders;
+
+import lombok.AllArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+// consegna dentro la jvm: basta un @EventListener su OrderEventDto (test, listener locali)
+@AllArgsConstructor
+@Component
+public class ApplicationOrderEventSink implements OrderEventSink {
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Override
+    public void deliver(OrderEventDto event) {
+        eventPublisher.publishEvent(event);
+    }
+}
@@ -0,0 +1,37 @@
+package com.codewithmosh.store.orders;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import org.hibernate.annotations.Immutable;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+// ordine spostato in orders_archive da OrderArchiver: solo lettura
+@Getter
+@Entity
+@Immutable
+@Table(name = "orders_archive")
+public class ArchivedOrder {
+    @Id
+    @Column(name = "id")
+    private Long id;
+
+    @Column(name = "customer_id")
+    private Long customerId;
+
+    @Column(name = "status")
+    @Enumerated(EnumType.STRING)
+    private PaymentStatus status;
+
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+
+    @Column(name = "total_price")
+    private BigDecimal totalPrice;
+
+    @OneToMany(mappedBy = "order")
+    private Set<ArchivedOrderItem> items = new LinkedHashSet<>();
+}
@@ -0,0 +1,37 @@
+package com.codewithmosh.store.orders;
+
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+// le stesse letture di OrderRepository, sulle tabelle di archivio: OrderService le usa quando lo storico arriva fin qui
+public interface ArchivedOrderRepository extends JpaRepository<ArchivedOrder, Long> {
+    String ORDER_ITEM_VIEW = "new com.codewithmosh.store.orders.OrderItemView(" +
+            "o.id, o.customerId, o.status, o.createdAt, o.totalPrice, i.quantity, i.totalPrice, p.id, p.name, p.price)";
+
+    @Query("SELECT new com.codewithmosh.store.orders.OrderSummaryView(o.id, o.status, o.createdAt, o.totalPrice) " +
+            "FROM ArchivedOrder o WHERE o.customerId = :customerId " +
+            "AND (:status IS NULL OR o.status = :status) " +
+            "AND o.createdAt >= :from " +
+            "AND (o.createdAt < :before OR (o.createdAt = :before AND o.id < :lastId)) " +
+            "ORDER BY o.createdAt DESC, o.id DESC")
+    List<OrderSummaryView> findPageByCustomerId(@Param("customerId") Long customerId,
+                                                @Param("status") PaymentStatus status,
+                                                @Param("from") LocalDateTime from,
+                                                @Param("before") LocalDateTime before,
+                                                @Param("lastId") Long lastId,
+                                                Limit limit);
+
+    @Query("SELECT " + ORDER_ITEM_VIEW + " FROM ArchivedOrder o JOIN o.items i JOIN i.product p " +
+            "WHERE o.id IN :orderIds ORDER BY i.id")
+    List<OrderItemView> findViewsByOrderIdIn(@Param("orderIds") Collection<Long> orderIds);
+
+    @Query("SELECT " + ORDER_ITEM_VIEW + " FROM ArchivedOrder o LEFT JOIN o.items i LEFT JOIN i.product p " +
+            "WHERE o.id = :orderId AND o.customerId = :customerId ORDER BY i.id")
+    List<OrderItemView> findViewsByIdAndCustomerId(@Param("orderId") Long orderId, @Param("customerId") Long customerId);
+}
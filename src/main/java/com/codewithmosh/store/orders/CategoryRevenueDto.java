@@ -0,0 +1,13 @@
+package com.codewithmosh.store.orders;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+@AllArgsConstructor
+@Data
+public class CategoryRevenueDto {
+    private Byte categoryId; // null per i prodotti senza categoria
+    private BigDecimal totalPrice;
+}
@@ -0,0 +1,16 @@
+package com.codewithmosh.store.orders;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+@AllArgsConstructor
+@Data
+public class DailyRevenueDto {
+    private LocalDate date;
+    private BigDecimal totalPrice;
+    private List<CategoryRevenueDto> categories;
+}
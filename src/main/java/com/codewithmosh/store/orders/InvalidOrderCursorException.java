@@ -0,0 +1,7 @@
+package com.codewithmosh.store.orders;
+
+public class InvalidOrderCursorException extends RuntimeException {
+    public InvalidOrderCursorException() {
+        super("Invalid cursor");
+    }
+}
@@ -0,0 +1,7 @@
+package com.codewithmosh.store.orders;
+
+public class InvalidReportRangeException extends RuntimeException {
+    public InvalidReportRangeException() {
+        super("from must not be after to");
+    }
+}
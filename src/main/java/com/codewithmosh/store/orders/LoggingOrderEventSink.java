@@ -0,0 +1,26 @@
+package com.codewithmosh.store.orders;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+// una riga json per evento sul logger "order-events": con la configurazione di logging si può mandare su un file a parte
+@Component
+@ConditionalOnProperty(name = "orders.outbox.sinks.log", havingValue = "true", matchIfMissing = true)
+public class LoggingOrderEventSink implements OrderEventSink {
+
+    private static final Logger log = LoggerFactory.getLogger("order-events");
+
+    private final ObjectMapper objectMapper;
+
+    public LoggingOrderEventSink(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public void deliver(OrderEventDto event) throws Exception {
+        log.info(objectMapper.writeValueAsString(event));
+    }
+}
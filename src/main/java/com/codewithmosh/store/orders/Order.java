@@ -1,6 +1,7 @@
 package com.codewithmosh.store.orders;
 
 import com.codewithmosh.store.carts.Cart;
+import com.codewithmosh.store.common.Money;
 import com.codewithmosh.store.users.User;
 import jakarta.persistence.*;
 import lombok.Getter;
@@ -48,10 +49,10 @@ public class Order {
         var order = new Order();
         order.setCustomer(customer);
         order.setStatus(PaymentStatus.PENDING);
-        order.setTotalPrice(cart.getTotalPrice());
+        order.setTotalPrice(Money.toBigDecimal(cart.getTotalCents()));
 
         cart.getItems().forEach(item -> {
-            var orderItem = new OrderItem(order, item.getProduct(), item.getQuantity());
+            var orderItem = new OrderItem(order, item.getProduct(), item.getQuantity(), item.getUnitPriceCents());
             order.items.add(orderItem);
         });
         return order;
@@ -0,0 +1,103 @@
+package com.codewithmosh.store.orders;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+// sposta gli ordini chiusi (COMPLETED/CANCELED) piu vecchi di afterDays in orders_archive / order_items_archive,
+// cosi orders e order_items restano piccole. Ogni batch è una transazione: copia e cancellazione insieme,
+// con una pausa tra un batch e l altro. Gli id non cambiano, quindi cursori e link agli ordini restano validi
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "orders.archive.enabled", havingValue = "true")
+public class OrderArchiver {
+
+    private static final List<String> ARCHIVED_STATUSES = List.of(
+            PaymentStatus.COMPLETED.name(), PaymentStatus.CANCELED.name());
+
+    private static final String SELECT_IDS =
+            "SELECT id FROM orders WHERE status IN (:statuses) AND created_at < :cutoff ORDER BY id LIMIT :limit FOR UPDATE";
+    private static final String COPY_ORDERS =
+            "INSERT INTO orders_archive (id, customer_id, status, created_at, total_price) " +
+            "SELECT id, customer_id, status, created_at, total_price FROM orders WHERE id IN (:ids)";
+    private static final String COPY_ITEMS =
+            "INSERT INTO order_items_archive (id, order_id, product_id, unit_price, quantity, total_price) " +
+            "SELECT id, order_id, product_id, unit_price, quantity, total_price FROM order_items WHERE order_id IN (:ids)";
+    private static final String DELETE_ITEMS = "DELETE FROM order_items WHERE order_id IN (:ids)";
+    private static final String DELETE_ORDERS = "DELETE FROM orders WHERE id IN (:ids)";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int afterDays;
+    private final int batchSize;
+    private final Duration pause;
+    private final Counter archivedCounter;
+
+    public OrderArchiver(DataSource dataSource,
+                         PlatformTransactionManager transactionManager,
+                         MeterRegistry meterRegistry,
+                         @Value("${orders.archive.afterDays:365}") int afterDays,
+                         @Value("${orders.archive.batchSize:500}") int batchSize,
+                         @Value("${orders.archive.pause:200ms}") Duration pause) {
+        this.jdbcTemplate = new NamedParameterJdbcTemplate(dataSource);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.afterDays = afterDays;
+        this.batchSize = batchSize;
+        this.pause = pause;
+        this.archivedCounter = Counter.builder("orders.archive.moved")
+                .description("orders moved to the archive tables")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(cron = "${orders.archive.cron:0 0 4 * * *}")
+    public void archive() {
+        var cutoff = LocalDateTime.now().minusDays(afterDays);
+        long total = 0;
+        int moved;
+        do {
+            moved = transactionTemplate.execute(status -> moveBatch(cutoff));
+            total += moved;
+            archivedCounter.increment(moved);
+            if (moved == batchSize && !pause())
+                break;
+        } while (moved == batchSize);
+        log.info("archived {} orders created before {}", total, cutoff);
+    }
+
+    private int moveBatch(LocalDateTime cutoff) {
+        var ids = jdbcTemplate.queryForList(SELECT_IDS,
+                Map.of("statuses", ARCHIVED_STATUSES, "cutoff", cutoff, "limit", batchSize), Long.class);
+        if (ids.isEmpty())
+            return 0;
+
+        var params = Map.of("ids", ids);
+        jdbcTemplate.update(COPY_ORDERS, params);
+        jdbcTemplate.update(COPY_ITEMS, params);
+        jdbcTemplate.update(DELETE_ITEMS, params);
+        jdbcTemplate.update(DELETE_ORDERS, params);
+        return ids.size();
+    }
+
+    private boolean pause() {
+        try {
+            Thread.sleep(pause.toMillis());
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
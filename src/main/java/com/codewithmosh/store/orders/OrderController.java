@@ -2,12 +2,13 @@ package com.codewithmosh.store.orders;
 
 import com.codewithmosh.store.common.ErrorDto;
 import lombok.AllArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.List;
+import java.time.LocalDate;
 
 @AllArgsConstructor
 @RestController
@@ -16,10 +17,19 @@ public class OrderController {
 
     private final OrderService orderService;
 
+    private static final int MAX_PAGE_SIZE = 100;
+
     @GetMapping
-    public ResponseEntity<List<OrderDto>> orders(){
+    public ResponseEntity<OrderPageDto> orders(
+            @RequestParam(required = false, name = "status") PaymentStatus status,
+            @RequestParam(required = false, name = "from") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false, name = "to") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false, defaultValue = "20", name = "limit") int limit,
+            @RequestParam(required = false, name = "cursor") String cursor,
+            @RequestParam(required = false, defaultValue = "false", name = "summary") boolean summary){
 
-        var orders = orderService.getOrders();
+        var pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        var orders = orderService.getOrders(status, from, to, pageSize, cursor, summary);
         return ResponseEntity.ok(orders);
     }
 
@@ -40,6 +50,12 @@ public class OrderController {
     }
 
 
+    @ExceptionHandler(InvalidOrderCursorException.class)
+    public ResponseEntity<ErrorDto> handleInvalidOrderCursorException(InvalidOrderCursorException e) {
+        return ResponseEntity.badRequest().body(new ErrorDto(e.getMessage()));
+    }
+
+
     @ExceptionHandler(OrderNotFoundException.class)
     public ResponseEntity<ErrorDto> handleOrderNotFoundException(OrderNotFoundException e) {
         return ResponseEntity.status(HttpStatus.NOT_FOUND).body(
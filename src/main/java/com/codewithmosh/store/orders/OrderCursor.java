@@ -0,0 +1,42 @@
+package com.codewithmosh.store.orders;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+// cursore opaco per lo storico ordini: data di creazione e id dell ultimo ordine della pagina (ordine decrescente)
+@AllArgsConstructor
+@Getter
+public class OrderCursor {
+    private static final String SEPARATOR = "|";
+
+    private LocalDateTime createdAt;
+    private Long lastId;
+
+    public static OrderCursor after(OrderDto order) {
+        return new OrderCursor(order.getCreatedAt(), order.getId());
+    }
+
+    public static OrderCursor decode(String cursor) {
+        try {
+            var decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            var separator = decoded.indexOf(SEPARATOR);
+            if (separator < 0)
+                throw new InvalidOrderCursorException();
+            return new OrderCursor(
+                    LocalDateTime.parse(decoded.substring(0, separator)),
+                    Long.valueOf(decoded.substring(separator + 1)));
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new InvalidOrderCursorException();
+        }
+    }
+
+    public String encode() {
+        var raw = createdAt + SEPARATOR + lastId;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -1,5 +1,6 @@
 package com.codewithmosh.store.orders;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.Data;
 
 import java.math.BigDecimal;
@@ -11,6 +12,7 @@ public class OrderDto {
     private Long id;
     private PaymentStatus status;
     private LocalDateTime createdAt;
+    @JsonInclude(JsonInclude.Include.NON_NULL) // assente nello storico in modalità summary
     private Set<OrderItemDto> items;
     private BigDecimal totalPrice;
 
@@ -0,0 +1,66 @@
+package com.codewithmosh.store.orders;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+// riga della outbox: scritta nella stessa transazione che modifica l ordine, consegnata poi da OrderEventRelay
+@Getter
+@Setter
+@Entity
+@Table(name = "order_events")
+public class OrderEvent {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id")
+    private Long id;
+
+    @Column(name = "order_id")
+    private Long orderId;
+
+    @Column(name = "customer_id")
+    private Long customerId;
+
+    @Column(name = "type")
+    @Enumerated(EnumType.STRING)
+    private OrderEventType type;
+
+    @Column(name = "status")
+    @Enumerated(EnumType.STRING)
+    private PaymentStatus status;
+
+    @Column(name = "total_price")
+    private BigDecimal totalPrice;
+
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+
+    @Column(name = "published_at")
+    private LocalDateTime publishedAt;
+
+    @Column(name = "failed_at")
+    private LocalDateTime failedAt; // tentativi esauriti: l evento non viene piu consegnato
+
+    @Column(name = "attempts")
+    private int attempts;
+
+    @Column(name = "next_attempt_at")
+    private LocalDateTime nextAttemptAt;
+
+    @Column(name = "last_error")
+    private String lastError;
+
+    public static OrderEvent of(Order order, OrderEventType type) {
+        var event = new OrderEvent();
+        event.setOrderId(order.getId());
+        event.setCustomerId(order.getCustomer().getId());
+        event.setType(type);
+        event.setStatus(order.getStatus());
+        event.setTotalPrice(order.getTotalPrice());
+        event.setCreatedAt(LocalDateTime.now());
+        return event;
+    }
+}
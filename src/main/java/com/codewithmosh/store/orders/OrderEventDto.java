@@ -0,0 +1,25 @@
+package com.codewithmosh.store.orders;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+// quello che ricevono i sink: l id dell evento permette di scartare i duplicati (consegna at-least-once)
+@AllArgsConstructor
+@Data
+public class OrderEventDto {
+    private Long eventId;
+    private Long orderId;
+    private Long customerId;
+    private OrderEventType type;
+    private PaymentStatus status;
+    private BigDecimal totalPrice;
+    private LocalDateTime occurredAt;
+
+    static OrderEventDto from(OrderEvent event) {
+        return new OrderEventDto(event.getId(), event.getOrderId(), event.getCustomerId(), event.getType(),
+                event.getStatus(), event.getTotalPrice(), event.getCreatedAt());
+    }
+}
@@ -0,0 +1,161 @@
+package com.codewithmosh.store.orders;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+// svuota la outbox order_events verso i sink, a batch, ognuno in una transazione.
+// consegna at-least-once e ordinata per ordine: se un evento fallisce, gli eventi successivi dello stesso ordine
+// aspettano il suo retry (backoff esponenziale). dopo maxAttempts l evento viene marcato failed e l ordine resta
+// bloccato (gauge orders.outbox.blocked): i suoi eventi successivi non partono finché un operatore non rimette
+// in coda l evento fallito (failed_at, attempts e next_attempt_at a null) o non lo cancella.
+// eventi consegnati e falliti vengono cancellati dopo retention, a batch.
+// findDeliverable non blocca le righe: con due relay attivi gli stessi eventi verrebbero consegnati due volte
+// e fuori ordine. per questo è spento di default e va acceso su un solo nodo (ORDERS_OUTBOX_RELAY_ENABLED=true)
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "orders.outbox.relay.enabled", havingValue = "true")
+public class OrderEventRelay {
+
+    private static final int MAX_ERROR_LENGTH = 500;
+    private static final Duration MAX_BACKOFF = Duration.ofMinutes(10);
+
+    private final OrderEventRepository orderEventRepository;
+    private final List<OrderEventSink> sinks;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final Duration retryBackoff;
+    private final Duration retention;
+
+    private final Counter publishedCounter;
+    private final Counter retriedCounter;
+    private final Counter failedCounter;
+    private volatile double lagSeconds;
+    private volatile long pending;
+    private volatile long blocked;
+
+    public OrderEventRelay(OrderEventRepository orderEventRepository,
+                           List<OrderEventSink> sinks,
+                           PlatformTransactionManager transactionManager,
+                           MeterRegistry meterRegistry,
+                           @Value("${orders.outbox.batchSize:100}") int batchSize,
+                           @Value("${orders.outbox.maxAttempts:10}") int maxAttempts,
+                           @Value("${orders.outbox.retryBackoff:1s}") Duration retryBackoff,
+                           @Value("${orders.outbox.retention:7d}") Duration retention) {
+        this.orderEventRepository = orderEventRepository;
+        this.sinks = sinks;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+        this.retryBackoff = retryBackoff;
+        this.retention = retention;
+
+        this.publishedCounter = Counter.builder("orders.outbox.published").register(meterRegistry);
+        this.retriedCounter = Counter.builder("orders.outbox.retried").register(meterRegistry);
+        this.failedCounter = Counter.builder("orders.outbox.failed").register(meterRegistry);
+        Gauge.builder("orders.outbox.lag", this, relay -> relay.lagSeconds)
+                .description("age of the oldest undelivered order event")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+        Gauge.builder("orders.outbox.pending", this, relay -> relay.pending)
+                .description("undelivered order events")
+                .register(meterRegistry);
+        Gauge.builder("orders.outbox.blocked", this, relay -> relay.blocked)
+                .description("orders whose events are held back behind a failed event")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${orders.outbox.pollInterval:1000}")
+    public void relay() {
+        Integer read;
+        do {
+            read = transactionTemplate.execute(status -> relayBatch());
+        } while (read != null && read == batchSize);
+        updateLag();
+    }
+
+    @Scheduled(cron = "${orders.outbox.purgeCron:0 30 4 * * *}")
+    public void purge() {
+        var cutoff = LocalDateTime.now().minus(retention);
+        long total = 0;
+        Integer deleted;
+        do {
+            deleted = transactionTemplate.execute(status -> purgeBatch(cutoff));
+            total += deleted;
+        } while (deleted == batchSize);
+        log.info("purged {} order events delivered or failed before {}", total, cutoff);
+    }
+
+    private int purgeBatch(LocalDateTime cutoff) {
+        var ids = new ArrayList<>(orderEventRepository.findPublishedBefore(cutoff, Limit.of(batchSize)));
+        if (ids.size() < batchSize)
+            ids.addAll(orderEventRepository.findFailedBefore(cutoff, Limit.of(batchSize - ids.size())));
+        if (!ids.isEmpty())
+            orderEventRepository.deleteAllByIdInBatch(ids);
+        return ids.size();
+    }
+
+    private int relayBatch() {
+        var now = LocalDateTime.now();
+        var events = orderEventRepository.findDeliverable(now, Limit.of(batchSize));
+        var blockedOrders = new HashSet<Long>();
+        for (var event : events) {
+            if (blockedOrders.contains(event.getOrderId()))
+                continue;
+            try {
+                var dto = OrderEventDto.from(event);
+                for (var sink : sinks)
+                    sink.deliver(dto);
+                event.setPublishedAt(now);
+                publishedCounter.increment();
+            } catch (Exception e) {
+                blockedOrders.add(event.getOrderId());
+                scheduleRetry(event, e, now);
+            }
+        }
+        return events.size();
+    }
+
+    private void scheduleRetry(OrderEvent event, Exception e, LocalDateTime now) {
+        event.setAttempts(event.getAttempts() + 1);
+        var message = String.valueOf(e.getMessage());
+        event.setLastError(message.length() > MAX_ERROR_LENGTH ? message.substring(0, MAX_ERROR_LENGTH) : message);
+
+        if (event.getAttempts() >= maxAttempts) {
+            event.setFailedAt(now);
+            failedCounter.increment();
+            log.error("giving up on order event {} after {} attempts: order {} is blocked, its later events are held",
+                    event.getId(), event.getAttempts(), event.getOrderId(), e);
+            return;
+        }
+
+        var backoff = retryBackoff.multipliedBy(1L << Math.min(event.getAttempts() - 1, 20));
+        if (backoff.compareTo(MAX_BACKOFF) > 0)
+            backoff = MAX_BACKOFF;
+        event.setNextAttemptAt(now.plus(backoff));
+        retriedCounter.increment();
+        log.warn("order event {} (order {}) failed, retry in {}", event.getId(), event.getOrderId(), backoff, e);
+    }
+
+    private void updateLag() {
+        var oldest = orderEventRepository.findOldestPendingCreatedAt();
+        lagSeconds = oldest == null ? 0 : Duration.between(oldest, LocalDateTime.now()).toMillis() / 1000.0;
+        pending = orderEventRepository.countPending();
+        blocked = orderEventRepository.countBlockedOrders();
+    }
+}
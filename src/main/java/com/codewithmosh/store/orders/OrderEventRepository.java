@@ -0,0 +1,47 @@
+package com.codewithmosh.store.orders;
+
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface OrderEventRepository extends JpaRepository<OrderEvent, Long> {
+    // un evento precedente dello stesso ordine ha esaurito i tentativi: questo resta fermo finché un operatore
+    // non sblocca l ordine, altrimenti i consumer vedrebbero per esempio PAID senza aver mai visto CREATED
+    String HELD = "EXISTS (SELECT f FROM OrderEvent f WHERE f.orderId = e.orderId AND f.id < e.id AND f.failedAt IS NOT NULL)";
+
+    // eventi da consegnare in ordine di id. Un evento resta fuori se un evento precedente dello stesso ordine
+    // è in attesa di retry o è fallito: cosi la consegna resta ordinata per ordine
+    @Query("SELECT e FROM OrderEvent e " +
+            "WHERE e.publishedAt IS NULL AND e.failedAt IS NULL " +
+            "AND (e.nextAttemptAt IS NULL OR e.nextAttemptAt <= :now) " +
+            "AND NOT EXISTS (SELECT p FROM OrderEvent p WHERE p.orderId = e.orderId AND p.id < e.id " +
+            "AND p.publishedAt IS NULL AND p.failedAt IS NULL AND p.nextAttemptAt > :now) " +
+            "AND NOT " + HELD + " " +
+            "ORDER BY e.id")
+    List<OrderEvent> findDeliverable(@Param("now") LocalDateTime now, Limit limit);
+
+    @Query("SELECT MIN(e.createdAt) FROM OrderEvent e WHERE e.publishedAt IS NULL AND e.failedAt IS NULL AND NOT " + HELD)
+    LocalDateTime findOldestPendingCreatedAt();
+
+    @Query("SELECT COUNT(e) FROM OrderEvent e WHERE e.publishedAt IS NULL AND e.failedAt IS NULL AND NOT " + HELD)
+    long countPending();
+
+    // ordini segnalati all operatore: hanno un evento fallito, e gli eventi successivi sono fermi
+    @Query("SELECT COUNT(DISTINCT e.orderId) FROM OrderEvent e WHERE e.failedAt IS NOT NULL")
+    long countBlockedOrders();
+
+    // per la pulizia: eventi consegnati prima della soglia
+    @Query("SELECT e.id FROM OrderEvent e WHERE e.publishedAt < :cutoff")
+    List<Long> findPublishedBefore(@Param("cutoff") LocalDateTime cutoff, Limit limit);
+
+    // eventi falliti prima della soglia che non tengono fermo nessun evento successivo:
+    // quelli che bloccano un ordine restano finché un operatore non se ne occupa
+    @Query("SELECT e.id FROM OrderEvent e WHERE e.publishedAt IS NULL AND e.failedAt < :cutoff " +
+            "AND NOT EXISTS (SELECT h FROM OrderEvent h WHERE h.orderId = e.orderId AND h.id > e.id " +
+            "AND h.publishedAt IS NULL AND h.failedAt IS NULL)")
+    List<Long> findFailedBefore(@Param("cutoff") LocalDateTime cutoff, Limit limit);
+}
@@ -0,0 +1,7 @@
+package com.codewithmosh.store.orders;
+
+// destinazione degli eventi ordine: ogni bean che implementa l interfaccia riceve tutti gli eventi, in ordine per ordine.
+// un eccezione fa ripetere la consegna dell evento a tutti i sink, quindi deve essere idempotente sull eventId
+public interface OrderEventSink {
+    void deliver(OrderEventDto event) throws Exception;
+}
@@ -0,0 +1,6 @@
+package com.codewithmosh.store.orders;
+
+public enum OrderEventType {
+    CREATED,
+    STATUS_CHANGED
+}
@@ -1,5 +1,6 @@
 package com.codewithmosh.store.orders;
 
+import com.codewithmosh.store.common.Money;
 import com.codewithmosh.store.products.Product;
 import jakarta.persistence.*;
 import lombok.Getter;
@@ -15,12 +16,12 @@ import java.math.BigDecimal;
 @Table(name = "order_items")
 public class OrderItem {
 
-    public OrderItem(Order order, Product product, Integer quantity) {
+    public OrderItem(Order order, Product product, Integer quantity, long unitPriceCents) {
         this.order = order;
         this.product = product;
         this.quantity = quantity;
-        this.unitPrice = product.getPrice();
-        this.totalPrice = unitPrice.multiply(BigDecimal.valueOf(quantity));
+        this.unitPrice = Money.toBigDecimal(unitPriceCents);
+        this.totalPrice = Money.toBigDecimal(unitPriceCents * quantity);
     }
 
     @Id
@@ -0,0 +1,23 @@
+package com.codewithmosh.store.orders;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+// una riga della proiezione ordine + item + prodotto: solo le colonne che servono a OrderDto
+@AllArgsConstructor
+@Getter
+public class OrderItemView {
+    private Long orderId;
+    private Long customerId;
+    private PaymentStatus status;
+    private LocalDateTime createdAt;
+    private BigDecimal orderTotalPrice;
+    private Integer quantity;
+    private BigDecimal itemTotalPrice;
+    private Long productId;
+    private String productName;
+    private BigDecimal productPrice;
+}
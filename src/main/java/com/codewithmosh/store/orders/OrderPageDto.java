@@ -0,0 +1,13 @@
+package com.codewithmosh.store.orders;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@AllArgsConstructor
+@Data
+public class OrderPageDto {
+    private List<OrderDto> items;
+    private String nextCursor; // null se non ci sono altre pagine
+}
@@ -1,17 +1,48 @@
 package com.codewithmosh.store.orders;
 
 import com.codewithmosh.store.users.User;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 public interface OrderRepository extends JpaRepository<Order, Long> {
+    String ORDER_ITEM_VIEW = "new com.codewithmosh.store.orders.OrderItemView(" +
+            "o.id, o.customer.id, o.status, o.createdAt, o.totalPrice, i.quantity, i.totalPrice, p.id, p.name, p.price)";
+
     // cosi facendo in un unica query forza il fetch join e prendo anche i product:
     //altrimenti sarebbe stata semplicemente cosi: List<Order> findByCustomer( User customer);
     @EntityGraph(attributePaths = "items.product")
     @Query("SELECT o FROM Order o WHERE o.customer = :customer")
     List<Order> findByCustomer(@Param("customer") User customer);
-}
\ No newline at end of file
+
+    // proiezioni per le GET: una riga per item, senza entity gestite
+    // pagina keyset dello storico, dal piu recente: (created_at, id) < (before, lastId).
+    // servita dall indice orders(customer_id, created_at, id)
+    @Query("SELECT new com.codewithmosh.store.orders.OrderSummaryView(o.id, o.status, o.createdAt, o.totalPrice) " +
+            "FROM Order o WHERE o.customer.id = :customerId " +
+            "AND (:status IS NULL OR o.status = :status) " +
+            "AND o.createdAt >= :from " +
+            "AND (o.createdAt < :before OR (o.createdAt = :before AND o.id < :lastId)) " +
+            "ORDER BY o.createdAt DESC, o.id DESC")
+    List<OrderSummaryView> findPageByCustomerId(@Param("customerId") Long customerId,
+                                                @Param("status") PaymentStatus status,
+                                                @Param("from") LocalDateTime from,
+                                                @Param("before") LocalDateTime before,
+                                                @Param("lastId") Long lastId,
+                                                Limit limit);
+
+    @Query("SELECT " + ORDER_ITEM_VIEW + " FROM Order o JOIN o.items i JOIN i.product p " +
+            "WHERE o.id IN :orderIds ORDER BY i.id")
+    List<OrderItemView> findViewsByOrderIdIn(@Param("orderIds") Collection<Long> orderIds);
+
+    // il controllo del proprietario sta nella query: un ordine di un altro cliente non viene nemmeno letto
+    @Query("SELECT " + ORDER_ITEM_VIEW + " FROM Order o LEFT JOIN o.items i LEFT JOIN i.product p " +
+            "WHERE o.id = :orderId AND o.customer.id = :customerId ORDER BY i.id")
+    List<OrderItemView> findViewsByIdAndCustomerId(@Param("orderId") Long orderId, @Param("customerId") Long customerId);
+}
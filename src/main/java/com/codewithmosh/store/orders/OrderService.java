@@ -1,36 +1,162 @@
 package com.codewithmosh.store.orders;
 
 import com.codewithmosh.store.auth.AuthService;
-import lombok.AllArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 
-@AllArgsConstructor
 @Service
 public class OrderService {
 
     private final AuthService authService;
     private final OrderRepository orderRepository;
-    private final OrderMapper orderMapper;
+    private final ArchivedOrderRepository archivedOrderRepository;
+    private final int archiveAfterDays;
 
+    public OrderService(AuthService authService,
+                        OrderRepository orderRepository,
+                        ArchivedOrderRepository archivedOrderRepository,
+                        @Value("${orders.archive.afterDays:365}") int archiveAfterDays) {
+        this.authService = authService;
+        this.orderRepository = orderRepository;
+        this.archivedOrderRepository = archivedOrderRepository;
+        this.archiveAfterDays = archiveAfterDays;
+    }
+
+    // nessun filtro sulle date: limiti che comprendono ogni ordine
+    private static final LocalDateTime MIN_CREATED_AT = LocalDateTime.of(1970, 1, 1, 0, 0);
+    private static final LocalDateTime MAX_CREATED_AT = LocalDateTime.of(9999, 12, 31, 0, 0);
 
-    public List<OrderDto> getOrders (){
+    // storico a pagine: una query sulle righe di orders (indice customer_id, created_at, id)
+    // e, se non è richiesto il solo riepilogo, una seconda per gli item dei soli ordini della pagina.
+    // quando la pagina arriva oltre l orizzonte di archiviazione si legge anche orders_archive e si fondono
+    // i risultati: stessi id e stesso ordinamento, quindi il cursore vale per entrambe
+    @Transactional(readOnly = true)
+    public OrderPageDto getOrders(PaymentStatus status, LocalDate from, LocalDate to,
+                                  int pageSize, String cursor, boolean summary) {
         var customer = authService.getCurrentUser();
-        var orders = orderRepository.findByCustomer(customer);
 
-        return orders.stream().map(orderMapper::toDto).toList();
+        var fromTime = from == null ? MIN_CREATED_AT : from.atStartOfDay();
+        // to è incluso: si parte dall inizio del giorno dopo, lastId 0 esclude quell istante
+        var before = to == null ? MAX_CREATED_AT : to.plusDays(1).atStartOfDay();
+        var lastId = 0L;
+        if (cursor != null) {
+            var position = OrderCursor.decode(cursor);
+            before = position.getCreatedAt();
+            lastId = position.getLastId();
+        }
+
+        var rows = new ArrayList<>(orderRepository.findPageByCustomerId(
+                customer.getId(), status, fromTime, before, lastId, Limit.of(pageSize + 1)));
+
+        // in archivio ci sono solo ordini piu vecchi dell orizzonte: se la pagina calda è piena e non ci arriva,
+        // l archivio non può contribuire
+        var archivedIds = new HashSet<Long>();
+        var horizon = LocalDateTime.now().minusDays(archiveAfterDays);
+        if (rows.size() <= pageSize || rows.get(rows.size() - 1).getCreatedAt().isBefore(horizon)) {
+            for (var row : archivedOrderRepository.findPageByCustomerId(
+                    customer.getId(), status, fromTime, before, lastId, Limit.of(pageSize + 1))) {
+                archivedIds.add(row.getId());
+                rows.add(row);
+            }
+            rows.sort(Comparator.comparing(OrderSummaryView::getCreatedAt)
+                    .thenComparing(OrderSummaryView::getId)
+                    .reversed());
+        }
+
+        var orders = new ArrayList<OrderDto>(Math.min(rows.size(), pageSize));
+        var byId = new HashMap<Long, OrderDto>();
+        for (var row : rows.subList(0, Math.min(rows.size(), pageSize))) {
+            var orderDto = new OrderDto();
+            orderDto.setId(row.getId());
+            orderDto.setStatus(row.getStatus());
+            orderDto.setCreatedAt(row.getCreatedAt());
+            orderDto.setTotalPrice(row.getTotalPrice());
+            orders.add(orderDto);
+            byId.put(row.getId(), orderDto);
+        }
+
+        if (!summary && !orders.isEmpty()) {
+            orders.forEach(order -> order.setItems(new LinkedHashSet<>()));
+            var hotIds = new HashSet<>(byId.keySet());
+            hotIds.removeAll(archivedIds);
+            var pageArchivedIds = new HashSet<>(byId.keySet());
+            pageArchivedIds.retainAll(archivedIds);
+
+            var itemRows = new ArrayList<OrderItemView>();
+            if (!hotIds.isEmpty())
+                itemRows.addAll(orderRepository.findViewsByOrderIdIn(hotIds));
+            if (!pageArchivedIds.isEmpty())
+                itemRows.addAll(archivedOrderRepository.findViewsByOrderIdIn(pageArchivedIds));
+            for (var row : itemRows)
+                byId.get(row.getOrderId()).getItems().add(toItemDto(row));
+        }
 
+        String nextCursor = null;
+        if (rows.size() > pageSize)
+            nextCursor = OrderCursor.after(orders.get(pageSize - 1)).encode();
+        return new OrderPageDto(orders, nextCursor);
     }
 
+    @Transactional(readOnly = true)
     public OrderDto findById(Long orderId){
-        var order = orderRepository.findById(orderId).orElseThrow(OrderNotFoundException::new);
-
         var customer = authService.getCurrentUser();
-        if (!order.isPlaceBy(customer)) {
-            throw new AccessDeniedException("Access denied");
+        var rows = orderRepository.findViewsByIdAndCustomerId(orderId, customer.getId());
+        if (rows.isEmpty())
+            rows = archivedOrderRepository.findViewsByIdAndCustomerId(orderId, customer.getId());
+        if (rows.isEmpty()) {
+            // solo in caso di miss si distingue tra ordine inesistente e ordine di un altro cliente
+            if (orderRepository.existsById(orderId) || archivedOrderRepository.existsById(orderId))
+                throw new AccessDeniedException("Access denied");
+            throw new OrderNotFoundException();
+        }
+        return toDtos(rows).get(0);
+    }
+
+    // raggruppa le righe (ordinate per ordine) ricostruendo OrderDto con i suoi item
+    private List<OrderDto> toDtos(List<OrderItemView> rows) {
+        var orders = new LinkedHashMap<Long, OrderDto>();
+        for (var row : rows) {
+            var order = orders.computeIfAbsent(row.getOrderId(), id -> {
+                var orderDto = new OrderDto();
+                orderDto.setId(id);
+                orderDto.setStatus(row.getStatus());
+                orderDto.setCreatedAt(row.getCreatedAt());
+                orderDto.setTotalPrice(row.getOrderTotalPrice());
+                orderDto.setItems(new LinkedHashSet<>());
+                return orderDto;
+            });
+
+            if (row.getProductId() == null)
+                continue;
+
+            order.getItems().add(toItemDto(row));
         }
-        return orderMapper.toDto(order);
+        return new ArrayList<>(orders.values());
+    }
+
+    private OrderItemDto toItemDto(OrderItemView row) {
+        var product = new ProductDto();
+        product.setId(row.getProductId());
+        product.setName(row.getProductName());
+        product.setPrice(row.getProductPrice());
+
+        var item = new OrderItemDto();
+        item.setProduct(product);
+        item.setQuantity(row.getQuantity());
+        item.setTotalPrice(row.getItemTotalPrice());
+        return item;
     }
 }
@@ -0,0 +1,17 @@
+package com.codewithmosh.store.orders;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+// solo le colonne di orders: la pagina dello storico si legge dall indice senza toccare gli item
+@AllArgsConstructor
+@Getter
+public class OrderSummaryView {
+    private Long id;
+    private PaymentStatus status;
+    private LocalDateTime createdAt;
+    private BigDecimal totalPrice;
+}
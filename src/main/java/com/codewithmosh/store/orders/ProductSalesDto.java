@@ -0,0 +1,15 @@
+package com.codewithmosh.store.orders;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+@AllArgsConstructor
+@Data
+public class ProductSalesDto {
+    private Long productId;
+    private String name;
+    private long quantity;
+    private BigDecimal totalPrice;
+}
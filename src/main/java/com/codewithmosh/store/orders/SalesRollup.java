@@ -0,0 +1,142 @@
+package com.codewithmosh.store.orders;
+
+import com.codewithmosh.store.common.Money;
+import lombok.AllArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.*;
+
+// aggregati di vendita per i report admin: conteggi per stato, incasso per giorno e categoria,
+// vendite per prodotto. Stanno in tabelle (V13) aggiornate nella stessa transazione che crea l ordine
+// o ne cambia lo stato: tutti i nodi leggono gli stessi numeri e un rollback li lascia com erano.
+// I report non fanno scansioni su orders/order_items. Importi in centesimi.
+// Le righe si aggiornano sempre nello stesso ordine (stato, categoria, prodotto), cosi due transazioni
+// concorrenti non vanno in deadlock
+@AllArgsConstructor
+@Component
+public class SalesRollup {
+
+    // stati che contano come incasso
+    public static final Set<PaymentStatus> REVENUE_STATUSES = EnumSet.of(PaymentStatus.PAID, PaymentStatus.COMPLETED);
+
+    private static final byte NO_CATEGORY = 0;
+
+    private static final String ORDER_COUNT_UPSERT =
+            "INSERT INTO sales_order_counts (status, order_count) VALUES (?, ?) " +
+            "ON DUPLICATE KEY UPDATE order_count = order_count + ?";
+    private static final String REVENUE_UPSERT =
+            "INSERT INTO sales_daily_revenue (sales_day, category_id, revenue_cents) VALUES (?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE revenue_cents = revenue_cents + ?";
+    private static final String PRODUCT_UPSERT =
+            "INSERT INTO sales_product_totals (product_id, quantity, revenue_cents) VALUES (?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE quantity = quantity + ?, revenue_cents = revenue_cents + ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    // da chiamare dentro la transazione che salva l ordine
+    public void orderCreated(Order order) {
+        addOrders(order.getStatus(), 1);
+    }
+
+    // da chiamare dentro la transazione che cambia lo stato
+    public void statusChanged(Order order, PaymentStatus previous) {
+        var current = order.getStatus();
+        if (previous == current)
+            return;
+
+        if (previous.compareTo(current) < 0) {
+            addOrders(previous, -1);
+            addOrders(current, 1);
+        } else {
+            addOrders(current, 1);
+            addOrders(previous, -1);
+        }
+
+        var sign = 0;
+        if (REVENUE_STATUSES.contains(current) && !REVENUE_STATUSES.contains(previous))
+            sign = 1;
+        else if (REVENUE_STATUSES.contains(previous) && !REVENUE_STATUSES.contains(current))
+            sign = -1;
+        if (sign == 0)
+            return;
+
+        var categories = new TreeMap<Byte, Long>();
+        var products = new TreeMap<Long, long[]>(); // quantità, centesimi
+        for (var item : order.getItems()) {
+            var product = item.getProduct();
+            var category = product.getCategory();
+            var cents = sign * Money.toCents(item.getTotalPrice());
+            categories.merge(category == null ? NO_CATEGORY : category.getId(), cents, Long::sum);
+            var sales = products.computeIfAbsent(product.getId(), id -> new long[2]);
+            sales[0] += sign * item.getQuantity();
+            sales[1] += cents;
+        }
+
+        var day = Date.valueOf(order.getCreatedAt().toLocalDate());
+        jdbcTemplate.batchUpdate(REVENUE_UPSERT, categories.entrySet().stream()
+                .map(entry -> new Object[]{day, entry.getKey(), entry.getValue(), entry.getValue()})
+                .toList());
+        jdbcTemplate.batchUpdate(PRODUCT_UPSERT, products.entrySet().stream()
+                .map(entry -> new Object[]{entry.getKey(), entry.getValue()[0], entry.getValue()[1],
+                        entry.getValue()[0], entry.getValue()[1]})
+                .toList());
+    }
+
+    @Transactional(readOnly = true)
+    public Map<PaymentStatus, Long> getOrderCounts() {
+        var counts = new EnumMap<PaymentStatus, Long>(PaymentStatus.class);
+        for (var status : PaymentStatus.values())
+            counts.put(status, 0L);
+        jdbcTemplate.query("SELECT status, order_count FROM sales_order_counts", row -> {
+            counts.put(PaymentStatus.valueOf(row.getString("status")), row.getLong("order_count"));
+        });
+        return counts;
+    }
+
+    @Transactional(readOnly = true)
+    public List<DailyRevenueDto> getRevenue(LocalDate from, LocalDate to) {
+        if (from.isAfter(to))
+            throw new InvalidReportRangeException();
+
+        var byDay = new LinkedHashMap<LocalDate, List<CategoryRevenueDto>>();
+        var totals = new HashMap<LocalDate, Long>();
+        jdbcTemplate.query("SELECT sales_day, category_id, revenue_cents FROM sales_daily_revenue " +
+                        "WHERE sales_day BETWEEN ? AND ? ORDER BY sales_day, category_id",
+                row -> {
+                    var day = row.getDate("sales_day").toLocalDate();
+                    var categoryId = row.getByte("category_id");
+                    var cents = row.getLong("revenue_cents");
+                    byDay.computeIfAbsent(day, d -> new ArrayList<>()).add(new CategoryRevenueDto(
+                            categoryId == NO_CATEGORY ? null : categoryId, Money.toBigDecimal(cents)));
+                    totals.merge(day, cents, Long::sum);
+                },
+                Date.valueOf(from), Date.valueOf(to));
+
+        var days = new ArrayList<DailyRevenueDto>(byDay.size());
+        byDay.forEach((day, categories) -> {
+            categories.sort(Comparator.comparing(CategoryRevenueDto::getCategoryId,
+                    Comparator.nullsLast(Comparator.naturalOrder())));
+            days.add(new DailyRevenueDto(day, Money.toBigDecimal(totals.get(day)), categories));
+        });
+        return days;
+    }
+
+    @Transactional(readOnly = true)
+    public List<ProductSalesDto> getTopProducts(int limit, boolean byQuantity) {
+        var order = byQuantity ? "s.quantity" : "s.revenue_cents";
+        return jdbcTemplate.query("SELECT s.product_id, p.name, s.quantity, s.revenue_cents " +
+                        "FROM sales_product_totals s JOIN products p ON p.id = s.product_id " +
+                        "WHERE s.quantity > 0 ORDER BY " + order + " DESC, s.product_id LIMIT ?",
+                (row, rowNum) -> new ProductSalesDto(row.getLong("product_id"), row.getString("name"),
+                        row.getLong("quantity"), Money.toBigDecimal(row.getLong("revenue_cents"))),
+                limit);
+    }
+
+    private void addOrders(PaymentStatus status, long delta) {
+        jdbcTemplate.update(ORDER_COUNT_UPSERT, status.name(), delta, delta);
+    }
+}
@@ -4,9 +4,14 @@ import com.codewithmosh.store.orders.Order;
 import com.codewithmosh.store.carts.CartEmptyException;
 import com.codewithmosh.store.carts.CartNotFoundException;
 import com.codewithmosh.store.carts.CartRepository;
+import com.codewithmosh.store.orders.OrderEvent;
+import com.codewithmosh.store.orders.OrderEventRepository;
+import com.codewithmosh.store.orders.OrderEventType;
 import com.codewithmosh.store.orders.OrderRepository;
+import com.codewithmosh.store.orders.SalesRollup;
 import com.codewithmosh.store.auth.AuthService;
 import com.codewithmosh.store.carts.CartService;
+import com.codewithmosh.store.carts.CartStore;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -20,13 +25,18 @@ public class CheckoutService {
 
     private final AuthService authService;
     private final CartService cartService;
+    private final CartStore cartStore;
 
     private final PaymentGateway  paymentGateway;
+    private final SalesRollup salesRollup;
+    private final OrderEventRepository orderEventRepository;
 
 
     @Transactional
     public CheckoutResponse checkout(CheckoutRequest request) {
-        var cart = cartRepository.findById(request.getCartId()).orElse(null);
+        //con il carrello write-behind le ultime modifiche potrebbero essere ancora solo in memoria
+        cartStore.flush(request.getCartId());
+        var cart = cartRepository.findWithItemsById(request.getCartId()).orElse(null);
         if(cart == null) {
            throw new CartNotFoundException();
         }
@@ -34,13 +44,16 @@ public class CheckoutService {
             throw new CartEmptyException();
         }
 
-        var order = Order.fromCart(cart, authService.getCurrentUser());
+        var order = Order.fromCart(cart, authService.getCurrentUserReference());
         orderRepository.save(order);
 
         //create a checkout session:
         try {
             var session = paymentGateway.createCheckoutSession(order);
             cartService.clearCart(cart.getId());
+            salesRollup.orderCreated(order);
+            // outbox: l evento esiste solo se la transazione dell ordine va a buon fine
+            orderEventRepository.save(OrderEvent.of(order, OrderEventType.CREATED));
             return new CheckoutResponse(order.getId(), session.getCheckoutUrl());
 
         } catch (PaymentException e) {
@@ -50,13 +63,18 @@ public class CheckoutService {
     }
 
 
+    @Transactional
     public void handleWebhookEvent(WebhookRequest request){
         paymentGateway
                 .parseWebhookEvent(request)
                 .ifPresent(payment -> {
                     var order = orderRepository.findById(payment.getOrderId()).orElseThrow();
+                    var previous = order.getStatus();
                     order.setStatus(payment.getPaymentStatus());
                     orderRepository.save(order);
+                    salesRollup.statusChanged(order, previous);
+                    if (previous != order.getStatus())
+                        orderEventRepository.save(OrderEvent.of(order, OrderEventType.STATUS_CHANGED));
                 });
     }
 
@@ -0,0 +1,91 @@
+package com.codewithmosh.store.products;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.Consumer;
+
+// lo stato di un indice vive in un oggetto S: una ricostruzione ne riempie uno nuovo a parte e poi lo sostituisce,
+// cosi durante un reload le letture vedono sempre un indice completo, mai uno svuotato a metà.
+// le scritture sono serializzate sull indice, le letture prendono lo stato corrente senza lock
+public abstract class AbstractProductIndex<S> implements ProductIndex {
+    private volatile S state;
+    private Rebuilding rebuilding; // guardato da this
+
+    protected AbstractProductIndex(S initialState) {
+        this.state = initialState;
+    }
+
+    protected S state() {
+        return state;
+    }
+
+    protected abstract S newState();
+
+    protected abstract void put(S state, Product product);
+
+    protected abstract void remove(S state, Long productId);
+
+    @Override
+    public synchronized void put(Product product) {
+        put(state, product);
+        if (rebuilding != null)
+            rebuilding.write(product.getId(), next -> put(next, product));
+    }
+
+    @Override
+    public synchronized void remove(Long productId) {
+        remove(state, productId);
+        if (rebuilding != null)
+            rebuilding.write(productId, next -> remove(next, productId));
+    }
+
+    @Override
+    public Rebuild rebuild() {
+        var next = new Rebuilding(newState()); // fuori dal lock: newState può leggere dal db
+        synchronized (this) {
+            rebuilding = next;
+        }
+        return next;
+    }
+
+    private class Rebuilding implements Rebuild {
+        private final S state;
+        // prodotti scritti durante la ricostruzione: la riga letta dal db può essere piu vecchia, quindi la salto
+        private final Set<Long> written = new HashSet<>();
+
+        Rebuilding(S state) {
+            this.state = state;
+        }
+
+        void write(Long productId, Consumer<S> update) {
+            written.add(productId);
+            update.accept(state);
+        }
+
+        @Override
+        public void put(Product product) {
+            synchronized (AbstractProductIndex.this) {
+                if (rebuilding == this && !written.contains(product.getId()))
+                    AbstractProductIndex.this.put(state, product);
+            }
+        }
+
+        @Override
+        public void commit() {
+            synchronized (AbstractProductIndex.this) {
+                if (rebuilding != this)
+                    return; // superata da una ricostruzione piu recente
+                AbstractProductIndex.this.state = state;
+                rebuilding = null;
+            }
+        }
+
+        @Override
+        public void discard() {
+            synchronized (AbstractProductIndex.this) {
+                if (rebuilding == this)
+                    rebuilding = null;
+            }
+        }
+    }
+}
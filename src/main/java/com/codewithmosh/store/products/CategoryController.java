@@ -0,0 +1,22 @@
+package com.codewithmosh.store.products;
+
+import lombok.AllArgsConstructor;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+@RestController
+@AllArgsConstructor
+@RequestMapping("/categories")
+public class CategoryController {
+
+    private final CategoryFacetIndex categoryFacetIndex;
+
+    // i conteggi sono tenuti in memoria, la navigazione per categoria non tocca il database
+    @GetMapping
+    public List<CategoryDto> getCategories() {
+        return categoryFacetIndex.getCategories();
+    }
+}
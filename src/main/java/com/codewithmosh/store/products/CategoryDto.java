@@ -0,0 +1,12 @@
+package com.codewithmosh.store.products;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@AllArgsConstructor
+@Data
+public class CategoryDto {
+    private Byte id;
+    private String name;
+    private int productCount;
+}
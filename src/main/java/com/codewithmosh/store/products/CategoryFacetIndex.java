@@ -0,0 +1,75 @@
+package com.codewithmosh.store.products;
+
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// conteggio dei prodotti per categoria: l id è un TINYINT quindi basta un array da 256
+@Component
+public class CategoryFacetIndex extends AbstractProductIndex<CategoryFacetIndex.State> {
+    private static final int CATEGORY_SLOTS = 256;
+
+    private final CategoryRepository categoryRepository;
+
+    static class State {
+        private final int[] counts = new int[CATEGORY_SLOTS];
+        private final String[] names = new String[CATEGORY_SLOTS];
+        private final Map<Long, Byte> productCategories = new HashMap<>(); // serve per sapere da dove togliere un prodotto spostato
+    }
+
+    public CategoryFacetIndex(CategoryRepository categoryRepository) {
+        super(new State());
+        this.categoryRepository = categoryRepository;
+    }
+
+    @Override
+    protected State newState() {
+        var state = new State();
+        // le categorie non hanno endpoint di scrittura: le ricarico solo insieme all indice
+        categoryRepository.findAll().forEach(category -> state.names[slot(category.getId())] = category.getName());
+        return state;
+    }
+
+    @Override
+    protected void put(State state, Product product) {
+        synchronized (state) {
+            remove(state, product.getId());
+            var category = product.getCategory();
+            if (category == null)
+                return;
+
+            state.productCategories.put(product.getId(), category.getId());
+            state.counts[slot(category.getId())]++;
+            if (state.names[slot(category.getId())] == null)
+                state.names[slot(category.getId())] = category.getName();
+        }
+    }
+
+    @Override
+    protected void remove(State state, Long productId) {
+        synchronized (state) {
+            var previous = state.productCategories.remove(productId);
+            if (previous != null)
+                state.counts[slot(previous)]--;
+        }
+    }
+
+    public List<CategoryDto> getCategories() {
+        var state = state();
+        synchronized (state) {
+            var categories = new ArrayList<CategoryDto>();
+            for (var slot = 0; slot < CATEGORY_SLOTS; slot++) {
+                if (state.names[slot] != null)
+                    categories.add(new CategoryDto((byte) slot, state.names[slot], state.counts[slot]));
+            }
+            return categories;
+        }
+    }
+
+    private static int slot(Byte categoryId) {
+        return categoryId & 0xFF;
+    }
+}
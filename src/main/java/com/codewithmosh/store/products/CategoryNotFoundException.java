@@ -0,0 +1,7 @@
+package com.codewithmosh.store.products;
+
+public class CategoryNotFoundException extends RuntimeException {
+    public CategoryNotFoundException() {
+        super("Category not found");
+    }
+}
@@ -0,0 +1,70 @@
+package com.codewithmosh.store.products;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+// lettore CSV minimale (RFC 4180): campi tra virgolette con virgole, "" e a capo all interno
+class CsvRecordReader {
+    private final Reader reader;
+    private int next = -2; // -2 = nessun carattere letto in anticipo
+
+    CsvRecordReader(Reader reader) {
+        this.reader = reader;
+    }
+
+    // ritorna null a fine file
+    List<String> readRecord() throws IOException {
+        var ch = read();
+        if (ch == -1)
+            return null;
+
+        var fields = new ArrayList<String>();
+        var field = new StringBuilder();
+        var quoted = false;
+        while (true) {
+            if (quoted) {
+                if (ch == -1)
+                    throw new IOException("unterminated quoted field");
+                if (ch == '"') {
+                    var following = read();
+                    if (following == '"') {
+                        field.append('"');
+                    } else {
+                        quoted = false;
+                        ch = following;
+                        continue;
+                    }
+                } else {
+                    field.append((char) ch);
+                }
+            } else if (ch == '"' && field.isEmpty()) {
+                quoted = true;
+            } else if (ch == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (ch == '\r' || ch == '\n' || ch == -1) {
+                if (ch == '\r') {
+                    var following = read();
+                    if (following != '\n')
+                        next = following;
+                }
+                fields.add(field.toString());
+                return fields;
+            } else {
+                field.append((char) ch);
+            }
+            ch = read();
+        }
+    }
+
+    private int read() throws IOException {
+        if (next != -2) {
+            var ch = next;
+            next = -2;
+            return ch;
+        }
+        return reader.read();
+    }
+}
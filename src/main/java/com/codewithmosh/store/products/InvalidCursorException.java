@@ -0,0 +1,7 @@
+package com.codewithmosh.store.products;
+
+public class InvalidCursorException extends RuntimeException {
+    public InvalidCursorException() {
+        super("Invalid cursor");
+    }
+}
@@ -0,0 +1,13 @@
+package com.codewithmosh.store.products;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@AllArgsConstructor
+@Data
+public class ProductBatchDto {
+    private List<ProductDto> products; // nello stesso ordine degli id richiesti
+    private List<Long> missingIds;
+}
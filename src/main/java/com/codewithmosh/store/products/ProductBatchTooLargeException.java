@@ -0,0 +1,7 @@
+package com.codewithmosh.store.products;
+
+public class ProductBatchTooLargeException extends RuntimeException {
+    public ProductBatchTooLargeException(int maxSize) {
+        super("at most " + maxSize + " ids per request");
+    }
+}
@@ -0,0 +1,5 @@
+package com.codewithmosh.store.products;
+
+// pubblicato dopo il commit di una modifica o cancellazione: serve a chi tiene copie dei Product in memoria (es. i carrelli)
+public record ProductChangedEvent(Long productId, boolean deleted) {
+}
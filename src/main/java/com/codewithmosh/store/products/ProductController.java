@@ -1,11 +1,13 @@
 package com.codewithmosh.store.products;
 
+import com.codewithmosh.store.common.ErrorDto;
 import com.codewithmosh.store.users.UserMapper;
 import lombok.AllArgsConstructor;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.math.BigDecimal;
 import java.util.List;
 
 @RestController
@@ -13,34 +15,57 @@ import java.util.List;
 @RequestMapping("/products")
 public class ProductController {
 
-    private final ProductRepository productRepository;
-    private final ProductMapper productMapper;
     private final UserMapper userMapper;
-    private final CategoryRepository categoryRepository;
+    private final ProductService productService;
+    private final ProductSearchIndex productSearchIndex;
+    private final ProductSuggestIndex productSuggestIndex;
+
+    private static final int MAX_PAGE_SIZE = 100;
+    private static final int MAX_SUGGESTIONS = 20;
 
     @GetMapping
-    public List<ProductDto> getProductsByCategory(
-            @RequestParam(required = false, name = "categoryId") Byte categoryId
+    public ProductPageDto getProductsByCategory(
+            @RequestParam(required = false, name = "categoryId") Byte categoryId,
+            @RequestParam(required = false, defaultValue = "id", name = "sort") String sort,
+            @RequestParam(required = false, name = "minPrice") BigDecimal minPrice,
+            @RequestParam(required = false, name = "maxPrice") BigDecimal maxPrice,
+            @RequestParam(required = false, defaultValue = "20", name = "limit") int limit,
+            @RequestParam(required = false, name = "cursor") String cursor
+    ) {
+        var pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        return productService.listProducts(categoryId, ProductSort.from(sort), minPrice, maxPrice, pageSize, cursor);
+    }
+
+    @GetMapping("/search")
+    public ProductSearchPageDto searchProducts(
+            @RequestParam(name = "q") String query,
+            @RequestParam(required = false, name = "categoryId") Byte categoryId,
+            @RequestParam(required = false, defaultValue = "0", name = "page") int page,
+            @RequestParam(required = false, defaultValue = "20", name = "size") int size
     ) {
-        List <Product> products;
-        if(categoryId != null) {
-            products = productRepository.findByCategoryId(categoryId);
-        }
-        else
-            products = productRepository.findAll();
-
-        return products.stream()
-                .map(productMapper::toDto)
-                .toList();
+        return productSearchIndex.search(query, categoryId, Math.max(page, 0), Math.max(1, Math.min(size, MAX_PAGE_SIZE)));
+    }
+
+    @GetMapping("/suggest")
+    public List<ProductSuggestionDto> suggestProducts(
+            @RequestParam(name = "q") String query,
+            @RequestParam(required = false, defaultValue = "10", name = "limit") int limit
+    ) {
+        return productSuggestIndex.suggest(query, Math.max(1, Math.min(limit, MAX_SUGGESTIONS)));
+    }
+
+    @GetMapping("/batch")
+    public ProductBatchDto getProductsByIds(
+            @RequestParam(name = "ids") List<Long> ids
+    ) {
+        return productService.getProducts(ids);
     }
 
     @GetMapping("/{id}")
     public ResponseEntity<ProductDto> getProductById(@PathVariable Long id) {
-        var product = productRepository.findById(id).orElse(null);
-       if(product == null) {
-           return ResponseEntity.notFound().build();
-       }
-        return ResponseEntity.ok(productMapper.toDto(product));
+        var product = productService.getProduct(id);
+        productSuggestIndex.recordView(id);
+        return ResponseEntity.ok(product);
     }
 
     @PostMapping
@@ -48,21 +73,9 @@ public class ProductController {
             @RequestBody ProductDto productDto
     )
     {
-        var product = productMapper.toEntity(productDto);
-
-        //bigogna vedere se la category esiste altrimenti non ha senso aggiungere un prodotto ad una categoria che non c'è:
-        var category = categoryRepository.findById(productDto.getCategoryId()).orElse(null);
-
-        if(category == null) {
-            return ResponseEntity.badRequest().build();
-        }
-        //facciamo la set perchè nel toEntity di prima nell implementazione non viene settata:
-        product.setCategory(category);
-
-        productRepository.save(product);
         return ResponseEntity.
                 status(HttpStatus.CREATED).
-                body(productMapper.toDto(product)); //potevo passargli il DTO della request ma mi sarei trovato l id a null
+                body(productService.createProduct(productDto));
     }
 
     @PutMapping("/{id}")
@@ -71,19 +84,7 @@ public class ProductController {
             @PathVariable Long id
     )
     {
-            var product =  productRepository.findById(id).orElse(null);
-            if(product == null) {
-                return ResponseEntity.notFound().build();
-            }
-            var category =  categoryRepository.findById(productDto.getCategoryId()).orElse(null);
-            if(category == null) {
-                return ResponseEntity.badRequest().build();
-            }
-            product.setCategory(category);
-            productMapper.update(productDto, product);
-            productRepository.save(product);
-            return ResponseEntity.ok(productMapper.toDto(product));
-
+        return ResponseEntity.ok(productService.updateProduct(id, productDto));
     }
 
     @DeleteMapping("/{id}")
@@ -91,14 +92,30 @@ public class ProductController {
             @PathVariable Long id
     )
     {
-        var product = productRepository.findById(id).orElse(null);
-        if(product == null) {
-            return ResponseEntity.notFound().build();
-        }
-        productRepository.delete(product);
+        productService.deleteProduct(id);
         return ResponseEntity.status(HttpStatus.NO_CONTENT).build();
     }
 
+    @ExceptionHandler(ProductNotFoundException.class)
+    public ResponseEntity<Void> handleProductNotFound() {
+        return ResponseEntity.notFound().build();
+    }
+
+    @ExceptionHandler(ProductBatchTooLargeException.class)
+    public ResponseEntity<ErrorDto> handleBatchTooLarge(ProductBatchTooLargeException e) {
+        return ResponseEntity.badRequest().body(new ErrorDto(e.getMessage()));
+    }
+
+    @ExceptionHandler(CategoryNotFoundException.class)
+    public ResponseEntity<ErrorDto> handleCategoryNotFound(CategoryNotFoundException e) {
+        return ResponseEntity.badRequest().body(new ErrorDto(e.getMessage()));
+    }
+
+    @ExceptionHandler(InvalidCursorException.class)
+    public ResponseEntity<ErrorDto> handleInvalidCursor(InvalidCursorException e) {
+        return ResponseEntity.badRequest().body(new ErrorDto(e.getMessage()));
+    }
+
 
 
 }
@@ -0,0 +1,66 @@
+package com.codewithmosh.store.products;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+// cursore opaco per la paginazione keyset: contiene il sort, il valore della chiave di ordinamento e l id dell ultimo prodotto
+@AllArgsConstructor
+@Getter
+public class ProductCursor {
+    private static final String SEPARATOR = "|";
+
+    private ProductSort sort;
+    private String key;
+    private Long lastId;
+
+    // cursore della prima pagina per i sort letti dal database
+    public static ProductCursor first(ProductSort sort) {
+        // valori sentinella: tutti i prodotti hanno id > 0 e nome >= ""
+        return new ProductCursor(sort, "", 0L);
+    }
+
+    public static ProductCursor after(ProductSort sort, ProductDto product) {
+        var key = sort == ProductSort.NAME ? product.getName() : "";
+        return new ProductCursor(sort, key, product.getId());
+    }
+
+    // i sort per prezzo sono serviti da ProductPriceIndex, che ragiona in centesimi
+    public static ProductCursor afterPrice(ProductSort sort, long cents, long productId) {
+        return new ProductCursor(sort, BigDecimal.valueOf(cents, 2).toPlainString(), productId);
+    }
+
+    public static ProductCursor decode(String cursor, ProductSort sort) {
+        try {
+            var decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            var first = decoded.indexOf(SEPARATOR);
+            var last = decoded.lastIndexOf(SEPARATOR);
+            if (first < 0 || first == last)
+                throw new InvalidCursorException();
+
+            var cursorSort = ProductSort.valueOf(decoded.substring(0, first));
+            if (cursorSort != sort)
+                throw new InvalidCursorException();
+
+            var key = decoded.substring(first + 1, last);
+            var lastId = Long.valueOf(decoded.substring(last + 1));
+            if (sort.isByPrice())
+                new BigDecimal(key); // validazione del formato
+            return new ProductCursor(sort, key, lastId);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidCursorException();
+        }
+    }
+
+    public long getCentsKey() {
+        return new BigDecimal(key).movePointRight(2).longValue();
+    }
+
+    public String encode() {
+        var raw = sort.name() + SEPARATOR + key + SEPARATOR + lastId;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -1,8 +1,12 @@
 package com.codewithmosh.store.products;
 
 import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
 
 @Data
+@NoArgsConstructor
 public class ProductDto {
 
     private Long id;
@@ -10,4 +14,13 @@ public class ProductDto {
     private String description;
     private Double price;
     private Byte categoryId;
+
+    // usato dalle query di proiezione (SELECT new ...): niente entity gestite ne dirty checking
+    public ProductDto(Long id, String name, String description, BigDecimal price, Byte categoryId) {
+        this.id = id;
+        this.name = name;
+        this.description = description;
+        this.price = price == null ? null : price.doubleValue();
+        this.categoryId = categoryId;
+    }
 }
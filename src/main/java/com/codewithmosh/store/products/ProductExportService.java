@@ -0,0 +1,65 @@
+package com.codewithmosh.store.products;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.zip.GZIPOutputStream;
+
+// export del catalogo in NDJSON (un prodotto per riga) letto in streaming dal cursore JDBC:
+// non si costruisce mai la lista completa in memoria, quindi l heap resta costante
+@Service
+public class ProductExportService {
+    private static final int FETCH_SIZE = 1000; // con MySQL serve useCursorFetch=true (spring.datasource.hikari.data-source-properties)
+    private static final int FLUSH_EVERY = 500;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+
+    public ProductExportService(DataSource dataSource, ObjectMapper objectMapper) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(FETCH_SIZE);
+        this.objectMapper = objectMapper;
+    }
+
+    // read-only: l export gira sulla replica e non pesa sul primario
+    @Transactional(readOnly = true)
+    public void exportNdjson(OutputStream outputStream, boolean gzip) throws IOException {
+        // syncFlush: ogni flush svuota anche il deflater, altrimenti il client non riceve nulla fino alla fine
+        var out = gzip ? new GZIPOutputStream(outputStream, 64 * 1024, true) : outputStream;
+        var writer = objectMapper.writer()
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+                .withRootValueSeparator("\n");
+
+        try (var sequence = writer.writeValues(out)) {
+            var rows = new int[1];
+            RowCallbackHandler handler = rs -> {
+                var product = new ProductDto();
+                product.setId(rs.getLong("id"));
+                product.setName(rs.getString("name"));
+                product.setDescription(rs.getString("description"));
+                product.setPrice(rs.getBigDecimal("price").doubleValue());
+                var categoryId = rs.getByte("category_id");
+                product.setCategoryId(rs.wasNull() ? null : categoryId);
+                try {
+                    sequence.write(product);
+                    if (++rows[0] % FLUSH_EVERY == 0)
+                        sequence.flush();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            };
+            jdbcTemplate.query("SELECT id, name, description, price, category_id FROM products ORDER BY id", handler);
+            sequence.flush();
+            if (rows[0] > 0)
+                out.write('\n'); // il separatore va solo tra le righe: chiudo l ultima, un catalogo vuoto resta vuoto
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.codewithmosh.store.products;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@AllArgsConstructor
+@Data
+public class ProductImportErrorDto {
+    private long row;
+    private String error;
+}
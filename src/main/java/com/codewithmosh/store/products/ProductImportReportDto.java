@@ -0,0 +1,13 @@
+package com.codewithmosh.store.products;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+public class ProductImportReportDto {
+    private long imported;
+    private long failed;
+    private List<ProductImportErrorDto> errors = new ArrayList<>(); // solo i primi errori, il totale è in failed
+}
@@ -0,0 +1,14 @@
+package com.codewithmosh.store.products;
+
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+// una riga del file di import: il prezzo resta BigDecimal, cosi arriva nella colonna decimal(10,2) senza passare da un double
+@Data
+public class ProductImportRow {
+    private String name;
+    private String description;
+    private BigDecimal price;
+    private Byte categoryId;
+}
@@ -0,0 +1,199 @@
+package com.codewithmosh.store.products;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+// import massivo del catalogo: le categorie si validano su una mappa caricata una volta sola
+// e gli insert vanno a JDBC in batch (con IDENTITY hibernate non riesce a fare batching).
+// ogni batch è committato da solo: le righe errate finiscono nel report, le altre vengono importate
+// e aggiunte agli indici in memoria con gli id generati, senza ricaricare il catalogo
+@Service
+public class ProductImportService {
+    private static final int BATCH_SIZE = 1000; // con MySQL serve rewriteBatchedStatements=true (spring.datasource.hikari.data-source-properties)
+    private static final int MAX_REPORTED_ERRORS = 1000;
+    private static final BigDecimal MAX_PRICE = new BigDecimal("99999999.99"); // decimal(10,2)
+    private static final String INSERT_SQL =
+            "INSERT INTO products (name, description, price, category_id) VALUES (?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final CategoryRepository categoryRepository;
+    private final List<ProductIndex> productIndexes;
+    private final ObjectMapper objectMapper;
+
+    public ProductImportService(DataSource dataSource,
+                                CategoryRepository categoryRepository,
+                                List<ProductIndex> productIndexes,
+                                ObjectMapper objectMapper) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.categoryRepository = categoryRepository;
+        this.productIndexes = productIndexes;
+        this.objectMapper = objectMapper;
+    }
+
+    public ProductImportReportDto importCsv(InputStream inputStream) throws IOException {
+        var csv = new CsvRecordReader(reader(inputStream));
+        var header = csv.readRecord();
+        if (header == null)
+            return new ProductImportReportDto();
+
+        var columns = new HashMap<String, Integer>();
+        for (var i = 0; i < header.size(); i++)
+            columns.put(header.get(i).strip(), i);
+
+        var batch = new Batch();
+        long row = 0;
+        List<String> record;
+        while ((record = csv.readRecord()) != null) {
+            row++;
+            if (record.size() == 1 && record.get(0).isBlank())
+                continue;
+
+            var product = new ProductImportRow();
+            product.setName(column(record, columns, "name"));
+            product.setDescription(column(record, columns, "description"));
+            try {
+                var price = column(record, columns, "price");
+                product.setPrice(price == null ? null : new BigDecimal(price.strip()));
+                var categoryId = column(record, columns, "categoryId");
+                product.setCategoryId(categoryId == null ? null : Byte.valueOf(categoryId.strip()));
+            } catch (NumberFormatException e) {
+                batch.reject(row, "invalid number: " + e.getMessage());
+                continue;
+            }
+            batch.add(row, product);
+        }
+        return batch.finish();
+    }
+
+    public ProductImportReportDto importNdjson(InputStream inputStream) throws IOException {
+        var reader = new BufferedReader(reader(inputStream));
+        var batch = new Batch();
+        long row = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            row++;
+            if (line.isBlank())
+                continue;
+            try {
+                batch.add(row, objectMapper.readValue(line, ProductImportRow.class));
+            } catch (JsonProcessingException e) {
+                batch.reject(row, "invalid json: " + e.getOriginalMessage());
+            }
+        }
+        return batch.finish();
+    }
+
+    private static InputStreamReader reader(InputStream inputStream) {
+        return new InputStreamReader(inputStream, StandardCharsets.UTF_8);
+    }
+
+    private static String column(List<String> record, HashMap<String, Integer> columns, String name) {
+        var index = columns.get(name);
+        if (index == null || index >= record.size() || record.get(index).isEmpty())
+            return null;
+        return record.get(index);
+    }
+
+    private class Batch {
+        private final Map<Byte, Category> categories = StreamSupport.stream(categoryRepository.findAll().spliterator(), false)
+                .collect(Collectors.toMap(Category::getId, category -> category));
+        private final List<Product> products = new ArrayList<>(BATCH_SIZE);
+        private final ProductImportReportDto report = new ProductImportReportDto();
+
+        void add(long row, ProductImportRow product) {
+            var error = validate(product);
+            if (error != null) {
+                reject(row, error);
+                return;
+            }
+            products.add(Product.builder()
+                    .name(product.getName().strip())
+                    .description(product.getDescription() == null ? "" : product.getDescription())
+                    .price(product.getPrice())
+                    .category(product.getCategoryId() == null ? null : categories.get(product.getCategoryId()))
+                    .build());
+            if (products.size() == BATCH_SIZE)
+                flush();
+        }
+
+        void reject(long row, String error) {
+            report.setFailed(report.getFailed() + 1);
+            if (report.getErrors().size() < MAX_REPORTED_ERRORS)
+                report.getErrors().add(new ProductImportErrorDto(row, error));
+        }
+
+        ProductImportReportDto finish() {
+            flush();
+            return report;
+        }
+
+        private String validate(ProductImportRow product) {
+            if (product.getName() == null || product.getName().isBlank())
+                return "name is required";
+            if (product.getName().length() > 255)
+                return "name must be at most 255 characters";
+            if (product.getPrice() == null)
+                return "price is required";
+            if (product.getPrice().signum() < 0 || product.getPrice().compareTo(MAX_PRICE) > 0)
+                return "price out of range";
+            // arrotondare cambierebbe il prezzo in silenzio: meglio rifiutare la riga
+            if (product.getPrice().stripTrailingZeros().scale() > 2)
+                return "price must have at most 2 decimals";
+            if (product.getCategoryId() != null && !categories.containsKey(product.getCategoryId()))
+                return "category " + product.getCategoryId() + " not found";
+            return null;
+        }
+
+        private void flush() {
+            if (products.isEmpty())
+                return;
+            var keys = new GeneratedKeyHolder();
+            jdbcTemplate.batchUpdate(connection -> connection.prepareStatement(INSERT_SQL, new String[]{"id"}),
+                    new BatchPreparedStatementSetter() {
+                        @Override
+                        public void setValues(PreparedStatement statement, int i) throws SQLException {
+                            var product = products.get(i);
+                            statement.setString(1, product.getName());
+                            statement.setString(2, product.getDescription());
+                            statement.setBigDecimal(3, product.getPrice());
+                            statement.setObject(4, product.getCategory() == null ? null : product.getCategory().getId());
+                        }
+
+                        @Override
+                        public int getBatchSize() {
+                            return products.size();
+                        }
+                    }, keys);
+            report.setImported(report.getImported() + products.size());
+
+            // il batch è committato: gli indici ricevono solo le righe appena inserite, come dopo una create
+            var generated = keys.getKeyList();
+            for (var i = 0; i < products.size(); i++) {
+                var product = products.get(i);
+                product.setId(((Number) generated.get(i).values().iterator().next()).longValue());
+                productIndexes.forEach(index -> index.put(product));
+            }
+            products.clear();
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.codewithmosh.store.products;
+
+// indice in memoria sui prodotti: ProductService lo aggiorna a ogni scrittura
+// e ProductIndexLoader lo ricostruisce all avvio (stesso pattern delle SecurityRules)
+public interface ProductIndex {
+    void put(Product product);
+
+    void remove(Long productId);
+
+    // una ricostruzione riempie un indice nuovo mentre le letture continuano su quello vecchio
+    Rebuild rebuild();
+
+    interface Rebuild {
+        void put(Product product);
+
+        // sostituisce l indice in un colpo solo
+        void commit();
+
+        // abbandona la ricostruzione se non è stata committata
+        void discard();
+    }
+}
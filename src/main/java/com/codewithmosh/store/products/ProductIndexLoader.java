@@ -0,0 +1,38 @@
+package com.codewithmosh.store.products;
+
+import jakarta.persistence.EntityManager;
+import lombok.AllArgsConstructor;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+@AllArgsConstructor
+@Component
+public class ProductIndexLoader {
+
+    private final ProductRepository productRepository;
+    private final List<ProductIndex> productIndexes;
+    private final EntityManager entityManager;
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void reload() {
+        // riempio indici nuovi a parte: finche non sono completi le letture continuano su quelli vecchi
+        var rebuilds = productIndexes.stream().map(ProductIndex::rebuild).toList();
+        try {
+            // leggo i prodotti in streaming e li stacco dal persistence context, cosi l heap non cresce con il catalogo
+            try (var products = productRepository.streamAll()) {
+                products.forEach(product -> {
+                    rebuilds.forEach(rebuild -> rebuild.put(product));
+                    entityManager.detach(product);
+                });
+            }
+            rebuilds.forEach(ProductIndex.Rebuild::commit);
+        } finally {
+            rebuilds.forEach(ProductIndex.Rebuild::discard);
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.codewithmosh.store.products;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@AllArgsConstructor
+@Data
+public class ProductPageDto {
+    private List<ProductDto> items;
+    private String nextCursor; // null se non ci sono altre pagine
+}
@@ -0,0 +1,123 @@
+package com.codewithmosh.store.products;
+
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+// indice ordinato per prezzo, uno per categoria piu uno globale: skip list ordinate per (centesimi, id),
+// cosi una query per fascia di prezzo è una discesa nella lista + k elementi e una scrittura sposta una sola voce.
+// la prima versione usava array paralleli long[] di centesimi e id, ma l indice deve seguire ogni scrittura sui
+// prodotti: in un array ordinato un inserimento o un cambio di prezzo sposta in media n/2 elementi (o obbliga a
+// ricopiare l array a ogni scrittura), e la prima lettura dopo una scrittura pagava un riordino di tutto il catalogo.
+// le voci tengono comunque i centesimi come long: il confronto non passa mai da BigDecimal
+@Component
+public class ProductPriceIndex extends AbstractProductIndex<ProductPriceIndex.State> {
+    private static final Comparator<Entry> ORDER =
+            Comparator.comparingLong(Entry::cents).thenComparingLong(Entry::productId);
+
+    static class State {
+        private final Map<Long, Entry> entries = new ConcurrentHashMap<>();
+        private final NavigableSet<Entry> all = new ConcurrentSkipListSet<>(ORDER);
+        private final Map<Byte, NavigableSet<Entry>> byCategory = new ConcurrentHashMap<>();
+    }
+
+    private record Entry(long productId, long cents, Byte categoryId) {
+        // voce fittizia usata solo come estremo di un intervallo
+        static Entry bound(long cents, long productId) {
+            return new Entry(productId, cents, null);
+        }
+    }
+
+    // una pagina di risultati: gli id in ordine e la posizione dell ultimo, per il cursore
+    public record Page(List<Long> productIds, long lastCents, long lastProductId, boolean hasMore) {
+    }
+
+    public static long toCents(BigDecimal price, RoundingMode roundingMode) {
+        return price.movePointRight(2).setScale(0, roundingMode).longValueExact();
+    }
+
+    public ProductPriceIndex() {
+        super(new State());
+    }
+
+    @Override
+    protected State newState() {
+        return new State();
+    }
+
+    @Override
+    protected void put(State state, Product product) {
+        var categoryId = product.getCategory() != null ? product.getCategory().getId() : null;
+        var entry = new Entry(product.getId(), toCents(product.getPrice(), RoundingMode.HALF_UP), categoryId);
+        var previous = state.entries.put(product.getId(), entry);
+        if (previous != null)
+            unlink(state, previous);
+
+        state.all.add(entry);
+        if (categoryId != null)
+            state.byCategory.computeIfAbsent(categoryId, id -> new ConcurrentSkipListSet<>(ORDER)).add(entry);
+    }
+
+    @Override
+    protected void remove(State state, Long productId) {
+        var previous = state.entries.remove(productId);
+        if (previous != null)
+            unlink(state, previous);
+    }
+
+    // afterCents/afterProductId sono null sulla prima pagina
+    public Page find(Byte categoryId, Long minCents, Long maxCents, boolean descending,
+                     Long afterCents, Long afterProductId, int limit) {
+        var state = state();
+        var prices = categoryId == null ? state.all : state.byCategory.get(categoryId);
+        if (prices == null)
+            return new Page(List.of(), 0, 0, false);
+
+        var from = Entry.bound(minCents == null ? Long.MIN_VALUE : minCents, Long.MIN_VALUE);
+        var to = Entry.bound(maxCents == null ? Long.MAX_VALUE : maxCents, Long.MAX_VALUE);
+        boolean fromInclusive = true, toInclusive = true;
+        if (afterCents != null) {
+            // il cursore restringe l intervallo solo dal lato verso cui si scorre
+            var after = Entry.bound(afterCents, afterProductId);
+            if (!descending && ORDER.compare(after, from) >= 0) {
+                from = after;
+                fromInclusive = false;
+            }
+            if (descending && ORDER.compare(after, to) <= 0) {
+                to = after;
+                toInclusive = false;
+            }
+        }
+        if (ORDER.compare(from, to) > 0)
+            return new Page(List.of(), 0, 0, false);
+
+        var range = prices.subSet(from, fromInclusive, to, toInclusive);
+        var iterator = (descending ? range.descendingSet() : range).iterator();
+        var productIds = new ArrayList<Long>(limit);
+        Entry last = null;
+        while (productIds.size() < limit && iterator.hasNext()) {
+            last = iterator.next();
+            productIds.add(last.productId());
+        }
+        if (last == null)
+            return new Page(productIds, 0, 0, false);
+        return new Page(productIds, last.cents(), last.productId(), iterator.hasNext());
+    }
+
+    private static void unlink(State state, Entry entry) {
+        state.all.remove(entry);
+        if (entry.categoryId() != null) {
+            var prices = state.byCategory.get(entry.categoryId());
+            if (prices != null)
+                prices.remove(entry);
+        }
+    }
+}
@@ -1,9 +1,55 @@
 package com.codewithmosh.store.products;
 
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
 
 public interface ProductRepository extends JpaRepository<Product, Long> {
+    String PRODUCT_DTO = "new com.codewithmosh.store.products.ProductDto(p.id, p.name, p.description, p.price, p.category.id)";
+
     List<Product> findByCategoryId(Byte categoryId);
-}
\ No newline at end of file
+
+    // paginazione keyset: invece di OFFSET si riparte dall ultima chiave letta, cosi ogni pagina costa uguale.
+    // le letture sono proiezioni sul DTO: solo le colonne necessarie e category_id senza join
+    @Query("SELECT " + PRODUCT_DTO + " FROM Product p " +
+            "WHERE (:categoryId IS NULL OR p.category.id = :categoryId) AND p.id > :lastId " +
+            "ORDER BY p.id")
+    List<ProductDto> findPageOrderById(
+            @Param("categoryId") Byte categoryId,
+            @Param("lastId") Long lastId,
+            Limit limit);
+
+    @Query("SELECT " + PRODUCT_DTO + " FROM Product p " +
+            "WHERE (:categoryId IS NULL OR p.category.id = :categoryId) " +
+            "AND (p.name > :lastName OR (p.name = :lastName AND p.id > :lastId)) " +
+            "ORDER BY p.name, p.id")
+    List<ProductDto> findPageOrderByName(
+            @Param("categoryId") Byte categoryId,
+            @Param("lastName") String lastName,
+            @Param("lastId") Long lastId,
+            Limit limit);
+
+    @Query("SELECT " + PRODUCT_DTO + " FROM Product p WHERE p.id = :id")
+    Optional<ProductDto> findDtoById(@Param("id") Long id);
+
+    @Query("SELECT " + PRODUCT_DTO + " FROM Product p WHERE p.id IN :ids")
+    List<ProductDto> findDtoByIdIn(@Param("ids") Collection<Long> ids);
+
+    // la categoria è EAGER: senza il fetch join findAllById farebbe una SELECT in piu per ogni categoria
+    @Query("SELECT p FROM Product p LEFT JOIN FETCH p.category WHERE p.id IN :ids")
+    List<Product> findAllWithCategoryByIdIn(@Param("ids") Collection<Long> ids);
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    @Query("SELECT p FROM Product p LEFT JOIN FETCH p.category")
+    Stream<Product> streamAll();
+}
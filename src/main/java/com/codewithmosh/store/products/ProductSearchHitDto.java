@@ -0,0 +1,16 @@
+package com.codewithmosh.store.products;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+@AllArgsConstructor
+@Data
+public class ProductSearchHitDto {
+    private Long id;
+    private String name;
+    private BigDecimal price;
+    private Byte categoryId;
+    private double score;
+}
@@ -0,0 +1,161 @@
+package com.codewithmosh.store.products;
+
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// indice invertito in memoria su nome e descrizione, con ranking BM25
+@Component
+public class ProductSearchIndex extends AbstractProductIndex<ProductSearchIndex.State> {
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    private static final int NAME_BOOST = 3; // un termine nel nome pesa come tre nella descrizione
+
+    // a parità di punteggio vince l id piu basso; in testa al heap c è il risultato peggiore
+    private static final Comparator<Hit> BEST_FIRST = Comparator.comparingDouble(Hit::score).reversed()
+            .thenComparing(hit -> hit.document().id());
+
+    static class State {
+        private final Map<String, Map<Long, Integer>> postings = new HashMap<>();
+        private final Map<Long, Document> documents = new HashMap<>();
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        private long totalLength;
+        // ogni documento ha una posizione densa: la ricerca accumula i punteggi in un double[] invece che in una mappa
+        private int slotCount;
+        private final ArrayDeque<Integer> freeSlots = new ArrayDeque<>();
+    }
+
+    private record Document(Long id, String name, BigDecimal price, Byte categoryId, int length, List<String> terms,
+                            int slot) {
+    }
+
+    private record Hit(Document document, double score) {
+    }
+
+    public ProductSearchIndex() {
+        super(new State());
+    }
+
+    @Override
+    protected State newState() {
+        return new State();
+    }
+
+    @Override
+    protected void put(State state, Product product) {
+        var frequencies = new HashMap<String, Integer>();
+        ProductText.tokenize(product.getName()).forEach(term -> frequencies.merge(term, NAME_BOOST, Integer::sum));
+        ProductText.tokenize(product.getDescription()).forEach(term -> frequencies.merge(term, 1, Integer::sum));
+        var length = frequencies.values().stream().mapToInt(Integer::intValue).sum();
+        var categoryId = product.getCategory() != null ? product.getCategory().getId() : null;
+        var terms = List.copyOf(frequencies.keySet());
+
+        state.lock.writeLock().lock();
+        try {
+            removeDocument(state, product.getId());
+            var slot = state.freeSlots.isEmpty() ? state.slotCount++ : state.freeSlots.pop();
+            var document = new Document(product.getId(), product.getName(), product.getPrice(), categoryId,
+                    length, terms, slot);
+            frequencies.forEach((term, frequency) ->
+                    state.postings.computeIfAbsent(term, t -> new HashMap<>()).put(product.getId(), frequency));
+            state.documents.put(product.getId(), document);
+            state.totalLength += length;
+        } finally {
+            state.lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    protected void remove(State state, Long productId) {
+        state.lock.writeLock().lock();
+        try {
+            removeDocument(state, productId);
+        } finally {
+            state.lock.writeLock().unlock();
+        }
+    }
+
+    // solo i primi (page + 1) * size risultati restano in un heap; i match si contano a parte per il totale
+    public ProductSearchPageDto search(String query, Byte categoryId, int page, int size) {
+        var terms = new LinkedHashSet<>(ProductText.tokenize(query));
+        var limit = (int) Math.min((long) (page + 1) * size, Integer.MAX_VALUE);
+        var top = new PriorityQueue<Hit>(BEST_FIRST.reversed());
+        int total;
+        var state = state();
+
+        state.lock.readLock().lock();
+        try {
+            var postings = state.postings;
+            var documents = state.documents;
+            var scores = new double[state.slotCount];
+            var matches = new ArrayList<Document>();
+            var documentCount = documents.size();
+            var averageLength = documentCount == 0 ? 0 : (double) state.totalLength / documentCount;
+
+            for (var term : terms) {
+                var termPostings = postings.get(term);
+                if (termPostings == null)
+                    continue;
+
+                var idf = Math.log(1 + (documentCount - termPostings.size() + 0.5) / (termPostings.size() + 0.5));
+                termPostings.forEach((productId, frequency) -> {
+                    var document = documents.get(productId);
+                    if (categoryId != null && !categoryId.equals(document.categoryId()))
+                        return;
+                    var norm = K1 * (1 - B + B * document.length() / averageLength);
+                    // idf e frequenza sono sempre positivi: un punteggio a zero vuol dire documento non ancora visto
+                    if (scores[document.slot()] == 0)
+                        matches.add(document);
+                    scores[document.slot()] += idf * frequency * (K1 + 1) / (frequency + norm);
+                });
+            }
+
+            total = matches.size();
+            for (var document : matches) {
+                var hit = new Hit(document, scores[document.slot()]);
+                if (top.size() < limit) {
+                    top.add(hit);
+                } else if (BEST_FIRST.compare(hit, top.peek()) < 0) {
+                    top.poll();
+                    top.add(hit);
+                }
+            }
+        } finally {
+            state.lock.readLock().unlock();
+        }
+
+        // documenti e hit sono immutabili: l ordinamento della pagina si fa fuori dal lock
+        var ranked = new ArrayList<>(top);
+        ranked.sort(BEST_FIRST);
+        var from = Math.min(page * size, ranked.size());
+        var items = ranked.subList(from, ranked.size()).stream()
+                .map(hit -> new ProductSearchHitDto(hit.document().id(), hit.document().name(),
+                        hit.document().price(), hit.document().categoryId(), hit.score()))
+                .toList();
+        return new ProductSearchPageDto(items, total, page, size);
+    }
+
+    private static void removeDocument(State state, Long productId) {
+        var previous = state.documents.remove(productId);
+        if (previous == null)
+            return;
+
+        state.totalLength -= previous.length();
+        state.freeSlots.push(previous.slot());
+        previous.terms().forEach(term -> {
+            var termPostings = state.postings.get(term);
+            termPostings.remove(productId);
+            if (termPostings.isEmpty())
+                state.postings.remove(term);
+        });
+    }
+}
@@ -0,0 +1,15 @@
+package com.codewithmosh.store.products;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@AllArgsConstructor
+@Data
+public class ProductSearchPageDto {
+    private List<ProductSearchHitDto> items;
+    private int total;
+    private int page;
+    private int size;
+}
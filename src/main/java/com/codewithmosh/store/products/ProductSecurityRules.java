@@ -14,6 +14,7 @@ public class ProductSecurityRules implements SecurityRules {
     public void configure(AuthorizeHttpRequestsConfigurer<HttpSecurity>.AuthorizationManagerRequestMatcherRegistry registry) {
         registry
             .requestMatchers(HttpMethod.GET, "/products/**").permitAll() //
+            .requestMatchers(HttpMethod.GET, "/categories/**").permitAll()
             .requestMatchers(HttpMethod.POST, "/products/**").hasRole(Role.ADMIN.name())
             .requestMatchers(HttpMethod.DELETE, "/products/**").hasRole(Role.ADMIN.name())
             .requestMatchers(HttpMethod.PUT, "/products/**").hasRole(Role.ADMIN.name());
@@ -0,0 +1,189 @@
+package com.codewithmosh.store.products;
+
+import lombok.AllArgsConstructor;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+
+@AllArgsConstructor
+@Service
+public class ProductService {
+    // cache Caffeine (W-TinyLFU, dimensione massima e scadenza in application.yaml): i prodotti cambiano solo dagli endpoint admin
+    public static final String PRODUCTS_CACHE = "products";
+    public static final int MAX_BATCH_SIZE = 100;
+
+    private final ProductRepository productRepository;
+    private final CategoryRepository categoryRepository;
+    private final ProductMapper productMapper;
+    private final List<ProductIndex> productIndexes;
+    private final CacheManager cacheManager;
+    private final ProductPriceIndex productPriceIndex;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Transactional(readOnly = true)
+    public ProductPageDto listProducts(Byte categoryId, ProductSort sort, BigDecimal minPrice, BigDecimal maxPrice,
+                                       int pageSize, String cursor) {
+        //con una fascia di prezzo i risultati sono sempre ordinati per prezzo
+        if ((minPrice != null || maxPrice != null) && !sort.isByPrice())
+            sort = ProductSort.PRICE;
+        var position = cursor == null ? null : ProductCursor.decode(cursor, sort);
+        if (sort.isByPrice())
+            return listByPrice(categoryId, sort, minPrice, maxPrice, pageSize, position);
+
+        if (position == null)
+            position = ProductCursor.first(sort);
+
+        //ne chiedo uno in piu per sapere se esiste una pagina successiva senza fare una count
+        var fetchLimit = Limit.of(pageSize + 1);
+        var products = sort == ProductSort.NAME
+                ? productRepository.findPageOrderByName(categoryId, position.getKey(), position.getLastId(), fetchLimit)
+                : productRepository.findPageOrderById(categoryId, position.getLastId(), fetchLimit);
+
+        String nextCursor = null;
+        if (products.size() > pageSize) {
+            products = products.subList(0, pageSize);
+            nextCursor = ProductCursor.after(sort, products.get(pageSize - 1)).encode();
+        }
+        return new ProductPageDto(products, nextCursor);
+    }
+
+    // gli id arrivano dall indice dei prezzi, i DTO dalla cache (o da un unica query IN)
+    private ProductPageDto listByPrice(Byte categoryId, ProductSort sort, BigDecimal minPrice, BigDecimal maxPrice,
+                                       int pageSize, ProductCursor position) {
+        var page = productPriceIndex.find(
+                categoryId,
+                minPrice == null ? null : ProductPriceIndex.toCents(minPrice, RoundingMode.CEILING),
+                maxPrice == null ? null : ProductPriceIndex.toCents(maxPrice, RoundingMode.FLOOR),
+                sort == ProductSort.PRICE_DESC,
+                position == null ? null : position.getCentsKey(),
+                position == null ? null : position.getLastId(),
+                pageSize);
+
+        var products = getProducts(page.productIds()).getProducts();
+        var nextCursor = page.hasMore()
+                ? ProductCursor.afterPrice(sort, page.lastCents(), page.lastProductId()).encode()
+                : null;
+        return new ProductPageDto(products, nextCursor);
+    }
+
+    @Transactional(readOnly = true)
+    @Cacheable(cacheNames = PRODUCTS_CACHE, key = "#id")
+    public ProductDto getProduct(Long id) {
+        return productRepository.findDtoById(id).orElseThrow(ProductNotFoundException::new);
+    }
+
+    // prima la cache, poi un unica query IN per gli id mancanti
+    @Transactional(readOnly = true)
+    public ProductBatchDto getProducts(List<Long> ids) {
+        // ids=1,,2 arriva con un null in mezzo: le voci vuote si ignorano (la cache non accetta chiavi null)
+        var requested = new LinkedHashSet<Long>();
+        ids.stream().filter(Objects::nonNull).forEach(requested::add);
+        if (requested.size() > MAX_BATCH_SIZE)
+            throw new ProductBatchTooLargeException(MAX_BATCH_SIZE);
+
+        var cache = cacheManager.getCache(PRODUCTS_CACHE);
+        var found = new HashMap<Long, ProductDto>();
+        var misses = new ArrayList<Long>();
+        for (var id : requested) {
+            var cached = cache.get(id, ProductDto.class);
+            if (cached != null)
+                found.put(id, cached);
+            else
+                misses.add(id);
+        }
+
+        if (!misses.isEmpty()) {
+            productRepository.findDtoByIdIn(misses).forEach(productDto -> {
+                cache.put(productDto.getId(), productDto);
+                found.put(productDto.getId(), productDto);
+            });
+        }
+
+        var products = new ArrayList<ProductDto>();
+        var missingIds = new ArrayList<Long>();
+        for (var id : requested) {
+            var productDto = found.get(id);
+            if (productDto != null)
+                products.add(productDto);
+            else
+                missingIds.add(id);
+        }
+        return new ProductBatchDto(products, missingIds);
+    }
+
+    // write-through: dopo il commit il DTO aggiornato va direttamente in cache, insieme agli indici
+    // (con @CachePut ci finirebbe anche se la transazione poi fa rollback)
+    @Transactional
+    public ProductDto createProduct(ProductDto productDto) {
+        var product = productMapper.toEntity(productDto);
+
+        //bigogna vedere se la category esiste altrimenti non ha senso aggiungere un prodotto ad una categoria che non c'è:
+        var category = categoryRepository.findById(productDto.getCategoryId()).orElseThrow(CategoryNotFoundException::new);
+
+        //facciamo la set perchè nel toEntity di prima nell implementazione non viene settata:
+        product.setCategory(category);
+
+        productRepository.save(product);
+        var result = productMapper.toDto(product); //potevo passargli il DTO della request ma mi sarei trovato l id a null
+        afterCommit(() -> {
+            productIndexes.forEach(index -> index.put(product));
+            cacheManager.getCache(PRODUCTS_CACHE).put(result.getId(), result);
+        });
+        return result;
+    }
+
+    @Transactional
+    public ProductDto updateProduct(Long id, ProductDto productDto) {
+        var product = productRepository.findById(id).orElseThrow(ProductNotFoundException::new);
+        var category = categoryRepository.findById(productDto.getCategoryId()).orElseThrow(CategoryNotFoundException::new);
+
+        product.setCategory(category);
+        productMapper.update(productDto, product);
+        productRepository.save(product);
+        var result = productMapper.toDto(product);
+        afterCommit(() -> {
+            productIndexes.forEach(index -> index.put(product));
+            cacheManager.getCache(PRODUCTS_CACHE).put(id, result);
+            eventPublisher.publishEvent(new ProductChangedEvent(id, false));
+        });
+        return result;
+    }
+
+    @Transactional
+    public void deleteProduct(Long id) {
+        var product = productRepository.findById(id).orElseThrow(ProductNotFoundException::new);
+        productRepository.delete(product);
+        afterCommit(() -> {
+            productIndexes.forEach(index -> index.remove(id));
+            cacheManager.getCache(PRODUCTS_CACHE).evict(id);
+            eventPublisher.publishEvent(new ProductChangedEvent(id, true));
+        });
+    }
+
+    // indici e cache si aggiornano solo a commit avvenuto: un rollback non lascia prodotti fantasma
+    private static void afterCommit(Runnable update) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            update.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                update.run();
+            }
+        });
+    }
+}
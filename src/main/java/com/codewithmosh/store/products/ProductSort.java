@@ -0,0 +1,21 @@
+package com.codewithmosh.store.products;
+
+public enum ProductSort {
+    ID,
+    PRICE,
+    PRICE_DESC,
+    NAME;
+
+    public boolean isByPrice() {
+        return this == PRICE || this == PRICE_DESC;
+    }
+
+    // come per il sort degli utenti: se il valore non è valido si ripiega sul default invece di dare errore
+    public static ProductSort from(String value) {
+        for (var sort : values()) {
+            if (sort.name().equalsIgnoreCase(value))
+                return sort;
+        }
+        return ID;
+    }
+}
@@ -0,0 +1,247 @@
+package com.codewithmosh.store.products;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+// autocomplete sui nomi: skip list ordinata di chiavi (nome normalizzato a partire da ogni parola) con ricerca sul prefisso.
+// una chiave è solo id + posizione della parola nel nome normalizzato, senza copie della stringa,
+// e le scritture la aggiornano direttamente senza riordinare tutto il catalogo.
+// i risultati sono ordinati per popolarità (visualizzazioni, salvate su product_views)
+@Slf4j
+@Component
+public class ProductSuggestIndex extends AbstractProductIndex<ProductSuggestIndex.State> {
+    private static final int MAX_SCANNED_KEYS = 2000; // tetto alla latenza per prefissi molto corti
+
+    private static final Comparator<Ranked> RANKING = Comparator.comparingLong(Ranked::popularity).reversed()
+            .thenComparing(Ranked::name)
+            .thenComparingLong(Ranked::productId);
+
+    private static final String VIEWS_UPSERT =
+            "INSERT INTO product_views (product_id, views) VALUES (?, ?) ON DUPLICATE KEY UPDATE views = views + ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    // fuori dallo stato: una ricostruzione dell indice non azzera le visualizzazioni
+    private final Map<Long, AtomicLong> popularity = new ConcurrentHashMap<>();
+    // visualizzazioni non ancora scritte su product_views
+    private final Map<Long, Long> unsavedViews = new ConcurrentHashMap<>();
+
+    static class State {
+        private final Map<Long, Entry> entries = new ConcurrentHashMap<>();
+        private final ConcurrentSkipListSet<Key> keys = new ConcurrentSkipListSet<>();
+        private final ConcurrentSkipListSet<Ranked> byPopularity = new ConcurrentSkipListSet<>(RANKING);
+    }
+
+    private static class Entry {
+        private final String name;
+        private final String normalized;
+        private final List<Integer> wordStarts;
+        private final AtomicLong popularity;
+        private Ranked ranked; // guardato da this, come removed
+        private boolean removed;
+
+        Entry(Long productId, String name, AtomicLong popularity) {
+            this.name = name;
+            this.normalized = ProductText.normalize(name);
+            this.wordStarts = wordStarts(normalized);
+            this.popularity = popularity;
+            this.ranked = new Ranked(popularity.get(), name, productId);
+        }
+
+        boolean matches(String prefix) {
+            for (var offset : wordStarts) {
+                if (normalized.startsWith(prefix, offset))
+                    return true;
+            }
+            return false;
+        }
+    }
+
+    // il suffisso text[offset..] confrontato carattere per carattere, a parità di testo decide l id
+    record Key(String text, int offset, long productId) implements Comparable<Key> {
+        boolean startsWith(String prefix) {
+            return text.startsWith(prefix, offset);
+        }
+
+        @Override
+        public int compareTo(Key other) {
+            var length = text.length() - offset;
+            var otherLength = other.text.length() - other.offset;
+            for (var i = 0; i < Math.min(length, otherLength); i++) {
+                var difference = text.charAt(offset + i) - other.text.charAt(other.offset + i);
+                if (difference != 0)
+                    return difference;
+            }
+            if (length != otherLength)
+                return length - otherLength;
+            return Long.compare(productId, other.productId);
+        }
+    }
+
+    // posizione di un prodotto nella classifica di popolarità: si sostituisce a ogni visualizzazione
+    private record Ranked(long popularity, String name, long productId) {
+    }
+
+    public ProductSuggestIndex(JdbcTemplate jdbcTemplate) {
+        super(new State());
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    protected State newState() {
+        // il totale salvato piu quello che questo nodo non ha ancora scritto
+        jdbcTemplate.query("SELECT product_id, views FROM product_views", row -> {
+            var productId = row.getLong("product_id");
+            var views = row.getLong("views") + unsavedViews.getOrDefault(productId, 0L);
+            popularity.computeIfAbsent(productId, id -> new AtomicLong()).set(views);
+        });
+        return new State();
+    }
+
+    @Override
+    protected void put(State state, Product product) {
+        // se il prodotto è gia indicizzato ne mantengo la popolarità
+        var entry = new Entry(product.getId(), product.getName(),
+                popularity.computeIfAbsent(product.getId(), id -> new AtomicLong()));
+        var previous = state.entries.put(product.getId(), entry);
+        if (previous != null)
+            unlink(state, product.getId(), previous);
+        entry.wordStarts.forEach(offset -> state.keys.add(new Key(entry.normalized, offset, product.getId())));
+        state.byPopularity.add(entry.ranked);
+    }
+
+    @Override
+    protected void remove(State state, Long productId) {
+        var previous = state.entries.remove(productId);
+        if (previous != null)
+            unlink(state, productId, previous);
+    }
+
+    @Override
+    public synchronized void remove(Long productId) {
+        super.remove(productId);
+        popularity.remove(productId);
+        unsavedViews.remove(productId);
+    }
+
+    // popolarità = numero di visualizzazioni del prodotto
+    public void recordView(Long productId) {
+        var state = state();
+        var entry = state.entries.get(productId);
+        if (entry == null)
+            return;
+
+        unsavedViews.merge(productId, 1L, Long::sum);
+        synchronized (entry) {
+            if (entry.removed)
+                return;
+            state.byPopularity.remove(entry.ranked);
+            entry.ranked = new Ranked(entry.popularity.incrementAndGet(), entry.name, productId);
+            state.byPopularity.add(entry.ranked);
+        }
+    }
+
+    public List<ProductSuggestionDto> suggest(String query, int limit) {
+        var prefix = ProductText.normalize(query).strip();
+        if (prefix.isEmpty())
+            return List.of();
+
+        // se le chiavi col prefisso stanno sotto il tetto le ordino tutte
+        var state = state();
+        var candidates = new HashMap<Long, Entry>();
+        var scanned = 0;
+        for (var key : state.keys.tailSet(new Key(prefix, 0, Long.MIN_VALUE))) {
+            if (!key.startsWith(prefix))
+                return rank(candidates, limit);
+            if (++scanned > MAX_SCANNED_KEYS)
+                break;
+            var entry = state.entries.get(key.productId());
+            if (entry != null)
+                candidates.putIfAbsent(key.productId(), entry);
+        }
+        if (scanned <= MAX_SCANNED_KEYS)
+            return rank(candidates, limit);
+
+        // prefisso troppo comune: scorro i prodotti dal piu popolare e tengo i primi che lo contengono,
+        // cosi un prodotto popolare non resta fuori solo perché in ordine alfabetico viene dopo il tetto
+        // (una visualizzazione concorrente sposta il prodotto: lo posso incontrare due volte)
+        var suggestions = new ArrayList<ProductSuggestionDto>(limit);
+        var seen = new HashSet<Long>();
+        for (var ranked : state.byPopularity) {
+            var entry = state.entries.get(ranked.productId());
+            if (entry != null && entry.matches(prefix) && seen.add(ranked.productId())) {
+                suggestions.add(new ProductSuggestionDto(ranked.productId(), entry.name));
+                if (suggestions.size() == limit)
+                    break;
+            }
+        }
+        return suggestions;
+    }
+
+    // scrive le visualizzazioni accumulate: una riga per prodotto visto dall ultimo giro
+    @Scheduled(fixedDelayString = "${products.views.flushInterval:10000}")
+    @PreDestroy
+    public void flushViews() {
+        var rows = new ArrayList<Object[]>();
+        for (var productId : unsavedViews.keySet()) {
+            var views = unsavedViews.remove(productId);
+            if (views != null)
+                rows.add(new Object[]{productId, views, views});
+        }
+        if (rows.isEmpty())
+            return;
+        try {
+            jdbcTemplate.batchUpdate(VIEWS_UPSERT, rows);
+        } catch (RuntimeException e) {
+            // le visualizzazioni sono solo un indicatore: un batch fallito (es. un prodotto appena cancellato) si perde
+            log.warn("could not save views of {} products", rows.size(), e);
+        }
+    }
+
+    private static List<ProductSuggestionDto> rank(Map<Long, Entry> candidates, int limit) {
+        var ranked = new ArrayList<Ranked>(candidates.size());
+        for (var entry : candidates.values()) {
+            synchronized (entry) {
+                ranked.add(entry.ranked);
+            }
+        }
+        return ranked.stream()
+                .sorted(RANKING)
+                .limit(limit)
+                .map(candidate -> new ProductSuggestionDto(candidate.productId(), candidate.name()))
+                .toList();
+    }
+
+    private static void unlink(State state, Long productId, Entry entry) {
+        entry.wordStarts.forEach(offset -> state.keys.remove(new Key(entry.normalized, offset, productId)));
+        synchronized (entry) {
+            entry.removed = true;
+            state.byPopularity.remove(entry.ranked);
+        }
+    }
+
+    // una chiave per ogni inizio di parola, cosi "gal" trova anche "Samsung Galaxy"
+    private static List<Integer> wordStarts(String normalized) {
+        var starts = new ArrayList<Integer>();
+        for (var i = 0; i < normalized.length(); i++) {
+            var wordStart = Character.isLetterOrDigit(normalized.charAt(i))
+                    && (i == 0 || !Character.isLetterOrDigit(normalized.charAt(i - 1)));
+            if (wordStart)
+                starts.add(i);
+        }
+        return starts;
+    }
+}
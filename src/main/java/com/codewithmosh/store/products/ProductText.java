@@ -0,0 +1,39 @@
+package com.codewithmosh.store.products;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+// normalizzazione del testo condivisa dagli indici: minuscolo e senza accenti ("Città" -> "citta")
+public final class ProductText {
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+
+    private ProductText() {
+    }
+
+    public static String normalize(String text) {
+        if (text == null)
+            return "";
+        var decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        return DIACRITICS.matcher(decomposed).replaceAll("").toLowerCase(Locale.ROOT);
+    }
+
+    // spezza su tutto quello che non è lettera o cifra
+    public static List<String> tokenize(String text) {
+        var normalized = normalize(text);
+        var tokens = new ArrayList<String>();
+        var start = -1;
+        for (var i = 0; i <= normalized.length(); i++) {
+            var isWordChar = i < normalized.length() && Character.isLetterOrDigit(normalized.charAt(i));
+            if (isWordChar && start < 0) {
+                start = i;
+            } else if (!isWordChar && start >= 0) {
+                tokens.add(normalized.substring(start, i));
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+}
@@ -7,6 +7,7 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 import java.util.Set;
@@ -19,6 +20,7 @@ public class UserService {
     private final UserMapper userMapper;
     private final PasswordEncoder passwordEncoder;
 
+    @Transactional(readOnly = true)
     public List<UserDto> findAll(String sort){
         //validazione del request parameter:
         //1. ci assicuriamo che possa essere opzionale con il required = false
@@ -33,11 +35,13 @@ public class UserService {
                 .toList();
     }
 
+    @Transactional(readOnly = true)
     public UserDto findById(Long id){
         var user = userRepository.findById(id).orElseThrow(UserNotFoundException::new);
         return userMapper.toDto(user);
     }
 
+    @Transactional
     public UserDto create(RegisterUserRequest request){
         //grazie a JPABuddy in automatico mi crea il metodo getEmail() nello user repository
         if(userRepository.existsByEmail(request.getEmail())){
@@ -63,6 +67,7 @@ public class UserService {
         return userMapper.toDto(user);
     }
 
+    @Transactional
     public UserDto update(UpdateUserRequest request, Long id){
         var user = userRepository.findById(id).orElseThrow(UserNotFoundException::new);
         // update: dentro l interfaccia mapper c'è il contratto del metodo che poi verrà implementato da spring
@@ -72,6 +77,7 @@ public class UserService {
         return userMapper.toDto(user);
     }
 
+    @Transactional
     public UserDto delete(Long id) {
         var user = userRepository.findById(id).orElseThrow(UserNotFoundException::new);
         userRepository.delete(user);
@@ -79,6 +85,7 @@ public class UserService {
         return userMapper.toDto(user);
     }
 
+    @Transactional
     public void changePassword(Long id, ChangePasswordRequest request) {
         var user = userRepository.findById(id).orElseThrow(UserNotFoundException::new);
         if (!user.getPassword().equals(request.getOldPassword())) {
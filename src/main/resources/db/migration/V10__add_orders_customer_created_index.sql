@@ -0,0 +1,2 @@
+create index orders_customer_created_id_index
+    on orders (customer_id, created_at, id);
@@ -0,0 +1,24 @@
+create table order_events
+(
+    id              bigint auto_increment
+        primary key,
+    order_id        bigint         not null,
+    customer_id     bigint         not null,
+    type            varchar(30)    not null,
+    status          varchar(20)    not null,
+    total_price     decimal(10, 2) not null,
+    created_at      datetime(6)    not null,
+    published_at    datetime(6)    null,
+    failed_at       datetime(6)    null,
+    attempts        int default 0  not null,
+    next_attempt_at datetime(6)    null,
+    last_error      varchar(500)   null
+);
+
+-- il relay legge gli eventi non ancora consegnati in ordine di id
+create index order_events_pending_index
+    on order_events (published_at, failed_at, id);
+
+-- controllo "evento precedente dello stesso ordine in attesa di retry"
+create index order_events_order_id_index
+    on order_events (order_id, id);
@@ -0,0 +1,32 @@
+-- ordini chiusi (COMPLETED/CANCELED) piu vecchi di orders.archive.afterDays: stesse colonne e stessi id delle tabelle calde
+create table orders_archive
+(
+    id          bigint primary key,
+    customer_id bigint         not null,
+    status      varchar(20)    not null,
+    created_at  datetime       not null,
+    total_price decimal(10, 2) not null,
+    constraint orders_archive_users_id_fk
+        foreign key (customer_id) references users (id)
+);
+
+create index orders_archive_customer_created_id_index
+    on orders_archive (customer_id, created_at, id);
+
+create table order_items_archive
+(
+    id          bigint primary key,
+    order_id    bigint         not null,
+    product_id  bigint         not null,
+    unit_price  decimal(10, 2) not null,
+    quantity    int            not null,
+    total_price decimal(10, 2) not null,
+    constraint order_items_archive_orders_archive_id_fk
+        foreign key (order_id) references orders_archive (id),
+    constraint order_items_archive_products_id_fk
+        foreign key (product_id) references products (id)
+);
+
+-- il job di archiviazione cerca gli ordini chiusi per data
+create index orders_status_created_index
+    on orders (status, created_at);
@@ -0,0 +1,50 @@
+-- aggregati dei report admin (SalesRollup), aggiornati nella transazione di ogni ordine. importi in centesimi
+create table sales_order_counts
+(
+    status      varchar(20) primary key,
+    order_count bigint not null
+);
+
+create table sales_daily_revenue
+(
+    sales_day     date    not null,
+    category_id   tinyint not null, -- 0 per i prodotti senza categoria: fa parte della chiave
+    revenue_cents bigint  not null,
+    primary key (sales_day, category_id)
+);
+
+create table sales_product_totals
+(
+    product_id    bigint primary key,
+    quantity      bigint not null,
+    revenue_cents bigint not null,
+    constraint sales_product_totals_products_id_fk
+        foreign key (product_id) references products (id)
+);
+
+-- backfill dallo storico, tabelle calde e archivio
+insert into sales_order_counts (status, order_count)
+select o.status, count(*)
+from (select status from orders union all select status from orders_archive) o
+group by o.status;
+
+insert into sales_daily_revenue (sales_day, category_id, revenue_cents)
+select cast(o.created_at as date), coalesce(p.category_id, 0), sum(i.total_price * 100)
+from (select id, status, created_at from orders
+      union all
+      select id, status, created_at from orders_archive) o
+         join (select order_id, product_id, total_price from order_items
+               union all
+               select order_id, product_id, total_price from order_items_archive) i on i.order_id = o.id
+         join products p on p.id = i.product_id
+where o.status in ('PAID', 'COMPLETED')
+group by cast(o.created_at as date), coalesce(p.category_id, 0);
+
+insert into sales_product_totals (product_id, quantity, revenue_cents)
+select i.product_id, sum(i.quantity), sum(i.total_price * 100)
+from (select id, status from orders union all select id, status from orders_archive) o
+         join (select order_id, product_id, quantity, total_price from order_items
+               union all
+               select order_id, product_id, quantity, total_price from order_items_archive) i on i.order_id = o.id
+where o.status in ('PAID', 'COMPLETED')
+group by i.product_id;
@@ -0,0 +1,8 @@
+-- visualizzazioni per prodotto, la popolarità usata dall autocomplete: sopravvive ai riavvii ed è la stessa su tutti i nodi
+create table product_views
+(
+    product_id bigint primary key,
+    views      bigint not null,
+    constraint product_views_products_id_fk
+        foreign key (product_id) references products (id) on delete cascade
+);
@@ -0,0 +1,5 @@
+create index products_name_id_index
+    on products (name, id);
+
+create index products_category_name_id_index
+    on products (category_id, name, id);
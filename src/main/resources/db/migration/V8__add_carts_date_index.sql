@@ -0,0 +1,2 @@
+create index carts_date_index
+    on carts (date);
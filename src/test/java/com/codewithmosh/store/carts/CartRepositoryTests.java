@@ -0,0 +1,96 @@
+package com.codewithmosh.store.carts;
+
+import com.codewithmosh.store.products.Category;
+import com.codewithmosh.store.products.Product;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.test.context.TestPropertySource;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// H2 in memoria con lo schema generato da hibernate: conta gli statement necessari per leggere un carrello
+@DataJpaTest
+@TestPropertySource(properties = {
+        "spring.flyway.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.generate_statistics=true"})
+class CartRepositoryTests {
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private CartRepository cartRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private final CartMapper cartMapper = new CartMapperImpl();
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Test
+    void loadingACartTakesOneStatementWhateverItsSize() {
+        var small = cartWithItems(1);
+        var large = cartWithItems(10);
+
+        assertEquals(1, statementsToRead(small));
+        assertEquals(1, statementsToRead(large));
+    }
+
+    @Test
+    void loadsItemsWithTheirProducts() {
+        var cartId = cartWithItems(3);
+        entityManager.clear();
+
+        var cart = cartMapper.toDto(cartRepository.findWithItemsById(cartId).orElseThrow());
+
+        assertEquals(3, cart.getItems().size());
+        assertEquals(new BigDecimal("6.00"), cart.getTotalPrice());
+    }
+
+    // ogni prodotto ha una sua categoria, cosi anche un N+1 sulle categorie verrebbe fuori
+    private UUID cartWithItems(int count) {
+        var cart = entityManager.persist(new Cart());
+        for (var i = 0; i < count; i++) {
+            var category = entityManager.persist(new Category("category " + i));
+            var product = entityManager.persist(Product.builder()
+                    .name("product " + i)
+                    .description("description")
+                    .price(new BigDecimal("2.00"))
+                    .category(category)
+                    .build());
+            var item = new CartItem();
+            item.setCart(cart);
+            item.setProduct(product);
+            item.setQuantity(1);
+            entityManager.persist(item);
+        }
+        entityManager.flush();
+        return cart.getId();
+    }
+
+    private long statementsToRead(UUID cartId) {
+        entityManager.clear();
+        statistics.clear();
+
+        var cart = cartRepository.findWithItemsById(cartId).orElseThrow();
+        cartMapper.toDto(cart);
+
+        return statistics.getPrepareStatementCount();
+    }
+}
@@ -0,0 +1,75 @@
+package com.codewithmosh.store.carts;
+
+import com.codewithmosh.store.products.Product;
+import com.codewithmosh.store.products.ProductRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+// il tetto sulle quantità vale per il risultato delle operazioni, non solo per il valore nella richiesta
+class CartServiceTests {
+
+    private final Cart cart = new Cart();
+    private final Product product = Product.builder().id(1L).name("product").price(BigDecimal.ONE).build();
+    private CartService cartService;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        var cartStore = mock(CartStore.class);
+        when(cartStore.update(any(), any())).thenAnswer(call -> ((Function<Cart, ?>) call.getArgument(1)).apply(cart));
+        var productRepository = mock(ProductRepository.class);
+        when(productRepository.findAllWithCategoryByIdIn(anyCollection())).thenReturn(List.of(product));
+        cartService = new CartService(cartStore, productRepository, new CartMapperImpl());
+
+        cart.setItemQuantity(product, 90);
+    }
+
+    @Test
+    void addsUpToTheCap() {
+        cartService.updateCartItems(UUID.randomUUID(), List.of(operation(CartItemOperation.Type.ADD, 10)));
+
+        assertEquals(100, cart.getItem(1L).getQuantity());
+    }
+
+    @Test
+    void anAddPastTheCapLeavesTheCartUnchanged() {
+        var operations = List.of(
+                operation(CartItemOperation.Type.SET, 50),
+                operation(CartItemOperation.Type.ADD, 30),
+                operation(CartItemOperation.Type.ADD, 30));
+
+        assertThrows(CartItemQuantityExceededException.class,
+                () -> cartService.updateCartItems(UUID.randomUUID(), operations));
+        assertEquals(90, cart.getItem(1L).getQuantity());
+    }
+
+    @Test
+    void aRemoveResetsTheQuantity() {
+        var operations = List.of(
+                operation(CartItemOperation.Type.REMOVE, null),
+                operation(CartItemOperation.Type.ADD, 100));
+
+        cartService.updateCartItems(UUID.randomUUID(), operations);
+        assertEquals(100, cart.getItem(1L).getQuantity());
+    }
+
+    private static CartItemOperation operation(CartItemOperation.Type type, Integer quantity) {
+        var operation = new CartItemOperation();
+        operation.setOp(type);
+        operation.setProductId(1L);
+        operation.setQuantity(quantity);
+        return operation;
+    }
+}
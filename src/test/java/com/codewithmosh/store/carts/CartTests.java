@@ -0,0 +1,39 @@
+package com.codewithmosh.store.carts;
+
+import com.codewithmosh.store.products.Product;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// il totale incrementale deve restare uguale a quello ricalcolato da zero dopo ogni modifica
+class CartTests {
+
+    @Test
+    void totalFollowsItemChanges() {
+        var cart = new Cart();
+        var book = product(1L, "12.50");
+        var pen = product(2L, "0.99");
+
+        assertEquals(0, cart.getTotalCents());
+        cart.addItem(book);
+        cart.addItem(pen, 3);
+        assertEquals(1547, cart.getTotalCents());
+
+        cart.getItem(book.getId()).setQuantity(2);
+        assertEquals(2797, cart.getTotalCents());
+
+        cart.setItemQuantity(pen, 1);
+        cart.removeItem(book.getId());
+        assertEquals(99, cart.getTotalCents());
+        assertEquals(new BigDecimal("0.99"), cart.getTotalPrice());
+
+        cart.clearItems();
+        assertEquals(0, cart.getTotalCents());
+    }
+
+    private static Product product(Long id, String price) {
+        return Product.builder().id(id).name("product " + id).price(new BigDecimal(price)).build();
+    }
+}
@@ -0,0 +1,113 @@
+package com.codewithmosh.store.carts;
+
+import com.codewithmosh.store.common.Money;
+import com.codewithmosh.store.products.Product;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// confronto tra il vecchio totale (stream + BigDecimal per item) e quello in centesimi, a parità di lavoro:
+// - first*: carrello appena caricato (come da hibernate, nessun totale in cache) e primo calcolo del totale.
+//   loadOnly misura solo il caricamento, da sottrarre a entrambi
+// - update*: modifica di quantità, aggiunta e rimozione di un item con una lettura del totale, cosi nel
+//   risultato in centesimi entra anche il costo degli aggiornamenti incrementali di setQuantity/addItem.
+// entrambe le varianti restituiscono il BigDecimal che finisce nel json.
+// non è un test: si lancia a mano con il main dopo mvn test-compile
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CartTotalBenchmark {
+
+    @Param({"1", "10", "50"})
+    private int items;
+
+    private List<Product> products;
+    private Product extra;
+    private Cart cart;
+    private int tick;
+
+    @Setup
+    public void setUp() {
+        products = new ArrayList<>();
+        for (var i = 0; i < items; i++) {
+            products.add(Product.builder()
+                    .id((long) i)
+                    .name("product " + i)
+                    .price(new BigDecimal("19.99"))
+                    .build());
+        }
+        extra = Product.builder().id(-1L).name("extra").price(new BigDecimal("5.49")).build();
+        cart = load();
+    }
+
+    @Benchmark
+    public Cart loadOnly() {
+        return load();
+    }
+
+    @Benchmark
+    public BigDecimal firstStreamReduce() {
+        return streamReduce(load());
+    }
+
+    @Benchmark
+    public BigDecimal firstTotalCents() {
+        return Money.toBigDecimal(load().getTotalCents());
+    }
+
+    @Benchmark
+    public BigDecimal updateStreamReduce() {
+        update();
+        var total = streamReduce(cart);
+        cart.removeItem(extra.getId());
+        return total;
+    }
+
+    @Benchmark
+    public BigDecimal updateTotalCents() {
+        update();
+        var total = Money.toBigDecimal(cart.getTotalCents());
+        cart.removeItem(extra.getId());
+        return total;
+    }
+
+    // come il caricamento da hibernate: gli item arrivano senza passare da addItem e nessun totale è in cache
+    private Cart load() {
+        var loaded = new Cart();
+        for (var i = 0; i < products.size(); i++) {
+            var item = new CartItem();
+            item.setProduct(products.get(i));
+            item.setQuantity(i % 5 + 1);
+            item.setCart(loaded);
+            loaded.getItems().add(item);
+        }
+        return loaded;
+    }
+
+    private void update() {
+        cart.setItemQuantity(products.get(0), ++tick % 5 + 1);
+        cart.addItem(extra);
+    }
+
+    private static BigDecimal streamReduce(Cart cart) {
+        return cart.getItems()
+                .stream()
+                .map(item -> item.getProduct().getPrice().multiply(BigDecimal.valueOf(item.getQuantity())))
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(CartTotalBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,135 @@
+package com.codewithmosh.store.carts;
+
+import com.codewithmosh.store.products.Product;
+import com.codewithmosh.store.products.ProductRepository;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// aggiunte concorrenti allo stesso carrello: nessuna deve andare persa.
+// H2 in modalità MySQL, per eseguire l upsert nativo ON DUPLICATE KEY UPDATE
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@DirtiesContext // i dati sono committati: il prossimo test parte da un database nuovo
+@TestPropertySource(properties = {
+        "spring.flyway.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.datasource.url=jdbc:h2:mem:carts;MODE=MySQL",
+        "spring.datasource.username=sa",
+        "spring.datasource.password="
+})
+class DatabaseCartStoreTests {
+
+    private static final int THREADS = 8;
+    private static final int ADDS_PER_THREAD = 10;
+
+    @Autowired
+    private CartRepository cartRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Product product;
+
+    @BeforeEach
+    void setUp() {
+        product = productRepository.save(Product.builder()
+                .name("product")
+                .description("description")
+                .price(new BigDecimal("1.00"))
+                .build());
+    }
+
+    @Test
+    void concurrentUpdatesOnOneNodeAreSerialized() throws Exception {
+        var store = new DatabaseCartStore(cartRepository, entityManager, transactionManager, 16, 1);
+        var cartId = store.create().getId();
+
+        addConcurrently(() -> store.update(cartId, cart -> cart.addItem(product)));
+
+        assertEquals(THREADS * ADDS_PER_THREAD, quantity(store, cartId));
+    }
+
+    // due store con lock separati simulano due nodi: qui lavora solo la @Version con i retry
+    @Test
+    void concurrentUpdatesAcrossNodesAreRetried() throws Exception {
+        var node1 = new DatabaseCartStore(cartRepository, entityManager, transactionManager, 16, 100);
+        var node2 = new DatabaseCartStore(cartRepository, entityManager, transactionManager, 16, 100);
+        var cartId = node1.create().getId();
+
+        var counter = new int[1];
+        addConcurrently(() -> {
+            var node = (counter[0]++ % 2 == 0) ? node1 : node2;
+            return node.update(cartId, cart -> cart.addItem(product));
+        });
+
+        assertEquals(THREADS * ADDS_PER_THREAD, quantity(node1, cartId));
+    }
+
+    // due nodi senza lock in comune: solo l upsert atomico sul database tiene insieme le quantità.
+    // lo schema generato non ha il vincolo unique di V2 su cui si appoggia ON DUPLICATE KEY, lo aggiungo qui
+    @Test
+    void concurrentAddsOfTheSameProductAreSummed() throws Exception {
+        jdbcTemplate.execute("CREATE UNIQUE INDEX cart_items_cart_product_unique ON cart_items (cart_id, product_id)");
+        try {
+            var node1 = new DatabaseCartStore(cartRepository, entityManager, transactionManager, 16, 1);
+            var node2 = new DatabaseCartStore(cartRepository, entityManager, transactionManager, 16, 1);
+            var cartId = node1.create().getId();
+
+            var counter = new int[1];
+            addConcurrently(() -> {
+                var node = (counter[0]++ % 2 == 0) ? node1 : node2;
+                return node.addItem(cartId, product);
+            });
+
+            assertEquals(THREADS * ADDS_PER_THREAD, quantity(node1, cartId));
+        } finally {
+            jdbcTemplate.execute("DROP INDEX cart_items_cart_product_unique");
+        }
+    }
+
+    private void addConcurrently(Callable<?> add) throws Exception {
+        var executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            var futures = new ArrayList<Future<?>>();
+            for (var i = 0; i < THREADS * ADDS_PER_THREAD; i++)
+                futures.add(executor.submit(add));
+            for (var future : futures)
+                future.get();
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private int quantity(DatabaseCartStore store, UUID cartId) {
+        return store.read(cartId, cart -> cart.getItem(product.getId()).getQuantity());
+    }
+}
@@ -0,0 +1,132 @@
+package com.codewithmosh.store.carts;
+
+import com.codewithmosh.store.products.Product;
+import com.codewithmosh.store.products.ProductChangedEvent;
+import com.codewithmosh.store.products.ProductRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@DirtiesContext // i dati sono committati: il prossimo test parte da un database nuovo
+@TestPropertySource(properties = {"spring.flyway.enabled=false", "spring.jpa.hibernate.ddl-auto=create-drop"})
+class WriteBehindCartStoreTests {
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private Product product;
+
+    @BeforeEach
+    void setUp() {
+        product = productRepository.save(Product.builder()
+                .name("product")
+                .description("description")
+                .price(new BigDecimal("1.00"))
+                .build());
+    }
+
+    // come un checkout fallito: il carrello non deve restare svuotato
+    @Test
+    void clearIsDiscardedWhenTheTransactionRollsBack() {
+        var store = new WriteBehindCartStore(entityManagerFactory, 100, Duration.ofMinutes(30), 100);
+        var cartId = store.create().getId();
+        store.addItem(cartId, product);
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            store.clear(cartId);
+            assertEquals(1, itemCount(store, cartId)); // prima del commit il carrello è ancora pieno
+            status.setRollbackOnly();
+        });
+        assertEquals(1, itemCount(store, cartId));
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> store.clear(cartId));
+        assertEquals(0, itemCount(store, cartId));
+    }
+
+    // oltre il tetto i carrelli gia scritti escono dalla memoria e si ricaricano dal database
+    @Test
+    void cartsOverTheCapAreReloadedFromTheDatabase() {
+        var store = new WriteBehindCartStore(entityManagerFactory, 100, Duration.ofMinutes(30), 2);
+        var cartIds = new ArrayList<UUID>();
+        for (var i = 0; i < 5; i++) {
+            var cartId = store.create().getId();
+            store.addItem(cartId, product);
+            store.flush(cartId);
+            cartIds.add(cartId);
+        }
+
+        cartIds.forEach(cartId -> assertEquals(1, itemCount(store, cartId)));
+    }
+
+    // il checkout legge il carrello dal database: una scrittura fallita deve arrivare fino a lui
+    @Test
+    void flushOfADeletedCartFails() {
+        var store = new WriteBehindCartStore(entityManagerFactory, 100, Duration.ofMinutes(30), 100);
+        var cartId = store.create().getId();
+        store.addItem(cartId, product);
+        store.flush(cartId);
+
+        var entityManager = entityManagerFactory.createEntityManager();
+        try {
+            entityManager.getTransaction().begin();
+            entityManager.createNativeQuery("DELETE FROM cart_items").executeUpdate();
+            entityManager.createNativeQuery("DELETE FROM carts").executeUpdate();
+            entityManager.getTransaction().commit();
+        } finally {
+            entityManager.close();
+        }
+        store.setItemQuantity(cartId, product.getId(), 3);
+
+        assertThrows(CartNotFoundException.class, () -> store.flush(cartId));
+    }
+
+    // un cambio di prezzo arriva anche ai carrelli gia in memoria, e le scritture successive non vanno in conflitto
+    @Test
+    void cachedCartsFollowProductChanges() {
+        var store = new WriteBehindCartStore(entityManagerFactory, 100, Duration.ofMinutes(30), 100);
+        var cartId = store.create().getId();
+        store.addItem(cartId, product);
+        store.setItemQuantity(cartId, product.getId(), 2);
+        store.flush(cartId);
+
+        product.setPrice(new BigDecimal("2.50"));
+        productRepository.save(product);
+        store.onProductChanged(new ProductChangedEvent(product.getId(), false));
+        assertEquals(500, store.read(cartId, Cart::getTotalCents));
+
+        store.setItemQuantity(cartId, product.getId(), 4);
+        store.flush(cartId);
+        assertEquals(1000, store.read(cartId, Cart::getTotalCents));
+
+        store.onProductChanged(new ProductChangedEvent(product.getId(), true));
+        assertEquals(0, itemCount(store, cartId));
+    }
+
+    private static int itemCount(WriteBehindCartStore store, UUID cartId) {
+        return store.read(cartId, cart -> cart.getItems().size());
+    }
+}
@@ -0,0 +1,131 @@
+package com.codewithmosh.store.common;
+
+import com.codewithmosh.store.auth.CurrentUser;
+import com.codewithmosh.store.users.Role;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// due database H2 in memoria al posto di primary e replica: ognuno dice chi è
+class ReplicaRoutingDataSourceTests {
+
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate readWrite;
+    private TransactionTemplate readOnly;
+
+    @BeforeEach
+    void setUp() {
+        var routing = new ReplicaRoutingDataSource(new ReadYourWritesTracker(Duration.ofMinutes(1)));
+        routing.setTargetDataSources(Map.of(
+                ReplicaRoutingDataSource.PRIMARY, database("primary"),
+                ReplicaRoutingDataSource.REPLICA, database("replica")));
+        routing.afterPropertiesSet();
+
+        var dataSource = new LazyConnectionDataSourceProxy(routing);
+        var transactionManager = new DataSourceTransactionManager(dataSource);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        readWrite = new TransactionTemplate(transactionManager);
+        readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    void readOnlyTransactionsGoToReplica() {
+        assertEquals("replica", readOnly.execute(status -> whoAmI()));
+    }
+
+    @Test
+    void readWriteTransactionsGoToPrimary() {
+        assertEquals("primary", readWrite.execute(status -> whoAmI()));
+    }
+
+    @Test
+    void readsAfterAWriteStickToPrimary() {
+        authenticate(1L);
+        readWrite.executeWithoutResult(status -> whoAmI());
+        assertEquals("primary", readOnly.execute(status -> whoAmI()));
+
+        authenticate(2L); // un altro utente non è influenzato
+        assertEquals("replica", readOnly.execute(status -> whoAmI()));
+    }
+
+    @Test
+    void rolledBackWritesDoNotStickToPrimary() {
+        authenticate(1L);
+        readWrite.executeWithoutResult(status -> {
+            whoAmI();
+            status.setRollbackOnly();
+        });
+        assertEquals("replica", readOnly.execute(status -> whoAmI()));
+    }
+
+    // come un lazy load con open-in-view: la connessione va sul primary ma non è una scrittura
+    @Test
+    void readsOutsideATransactionAreNotWrites() {
+        authenticate(1L);
+        assertEquals("primary", whoAmI());
+        assertEquals("replica", readOnly.execute(status -> whoAmI()));
+    }
+
+    // i client anonimi arrivano tutti dallo stesso indirizzo (il proxy): conta il carrello
+    @Test
+    void anonymousReadsAfterAWriteStickToPrimaryPerCart() {
+        onCart("1b1f7a36-0000-7000-8000-000000000001");
+        readWrite.executeWithoutResult(status -> whoAmI());
+        assertEquals("primary", readOnly.execute(status -> whoAmI()));
+
+        onCart("1b1f7a36-0000-7000-8000-000000000002");
+        assertEquals("replica", readOnly.execute(status -> whoAmI()));
+    }
+
+    private String whoAmI() {
+        return jdbcTemplate.queryForObject("SELECT name FROM node", String.class);
+    }
+
+    private static void authenticate(Long userId) {
+        var user = new CurrentUser(userId, "user" + userId + "@example.com", "user" + userId, Role.USER);
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(
+                user, null, List.of(new SimpleGrantedAuthority("ROLE_USER"))));
+    }
+
+    private static void onCart(String cartId) {
+        var request = new MockHttpServletRequest("GET", "/carts/" + cartId);
+        request.setRemoteAddr("10.0.0.1");
+        request.setAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE, Map.of("cartId", cartId));
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+    }
+
+    private static DataSource database(String name) {
+        var dataSource = new DriverManagerDataSource("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1");
+        var jdbc = new JdbcTemplate(dataSource);
+        jdbc.execute("CREATE TABLE IF NOT EXISTS node (name VARCHAR(20))");
+        jdbc.execute("DELETE FROM node");
+        jdbc.update("INSERT INTO node VALUES (?)", name);
+        return dataSource;
+    }
+}
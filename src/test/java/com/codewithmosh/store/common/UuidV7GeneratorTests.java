@@ -0,0 +1,44 @@
+package com.codewithmosh.store.common;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UuidV7GeneratorTests {
+
+    @Test
+    void generatesVersion7WithTheCurrentTimestamp() {
+        var before = System.currentTimeMillis();
+        var uuid = UuidV7Generator.next();
+
+        assertEquals(7, uuid.version());
+        assertEquals(2, uuid.variant());
+        assertTrue(uuid.getMostSignificantBits() >>> 16 >= before);
+    }
+
+    // è il punto d ingresso usato da hibernate per @UuidGenerator(algorithm = UuidV7Generator.class) su Cart.id
+    @Test
+    void generatesVersion7KeysForEntities() {
+        var uuid = new UuidV7Generator().generateUuid(null);
+
+        assertEquals(7, uuid.version());
+    }
+
+    // l ordine che conta è quello dei byte salvati nel binary(16), non quello di UUID.compareTo (con segno)
+    @Test
+    void keysAreUniqueAndIncreasingAsStoredBytes() {
+        var seen = new HashSet<UUID>();
+        var previous = UuidBytes.toBytes(UuidV7Generator.next());
+        for (var i = 0; i < 100_000; i++) {
+            var uuid = UuidV7Generator.next();
+            var bytes = UuidBytes.toBytes(uuid);
+            assertTrue(Arrays.compareUnsigned(previous, bytes) < 0);
+            assertTrue(seen.add(uuid));
+            previous = bytes;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.codewithmosh.store.orders;
+
+import com.codewithmosh.store.auth.AuthService;
+import com.codewithmosh.store.auth.CurrentUser;
+import com.codewithmosh.store.products.Product;
+import com.codewithmosh.store.products.ProductRepository;
+import com.codewithmosh.store.users.Role;
+import com.codewithmosh.store.users.User;
+import com.codewithmosh.store.users.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+// archiviazione a batch da 1 e lettura dello storico a cavallo tra tabelle calde e archivio
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@DirtiesContext // i dati sono committati: il prossimo test parte da un database nuovo
+@TestPropertySource(properties = {"spring.flyway.enabled=false", "spring.jpa.hibernate.ddl-auto=create-drop"})
+class OrderArchiverTests {
+
+    private static final int AFTER_DAYS = 30;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private ArchivedOrderRepository archivedOrderRepository;
+
+    private JdbcTemplate jdbcTemplate;
+    private OrderService orderService;
+    private Long productId;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        var customer = userRepository.save(User.builder()
+                .name("customer").email("customer@example.com").password("password").role(Role.USER).build());
+        productId = productRepository.save(Product.builder()
+                .name("book").description("description").price(new BigDecimal("10.00")).build()).getId();
+
+        var now = LocalDateTime.now();
+        order(1L, customer.getId(), "COMPLETED", now.minusDays(400));
+        order(2L, customer.getId(), "PENDING", now.minusDays(300)); // vecchio ma non chiuso: resta
+        order(3L, customer.getId(), "CANCELED", now.minusDays(200));
+        order(4L, customer.getId(), "COMPLETED", now.minusDays(1)); // recente: resta
+
+        var authService = mock(AuthService.class);
+        when(authService.getCurrentUser()).thenReturn(
+                new CurrentUser(customer.getId(), customer.getEmail(), customer.getName(), Role.USER));
+        orderService = new OrderService(authService, orderRepository, archivedOrderRepository, AFTER_DAYS);
+    }
+
+    @Test
+    void movesOldClosedOrdersAndKeepsHistoryReadable() {
+        new OrderArchiver(dataSource, transactionManager, new SimpleMeterRegistry(), AFTER_DAYS, 1, Duration.ZERO)
+                .archive();
+
+        assertEquals(List.of(2L, 4L), orderRepository.findAll().stream().map(Order::getId).sorted().toList());
+        assertEquals(List.of(1L, 3L), archivedOrderRepository.findAll().stream().map(ArchivedOrder::getId).sorted().toList());
+
+        // una pagina alla volta: il cursore passa da orders a orders_archive e viceversa
+        var ids = new ArrayList<Long>();
+        String cursor = null;
+        do {
+            var page = orderService.getOrders(null, null, null, 1, cursor, false);
+            page.getItems().forEach(order -> {
+                ids.add(order.getId());
+                assertEquals(1, order.getItems().size());
+            });
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+        assertEquals(List.of(4L, 3L, 2L, 1L), ids);
+
+        assertEquals(new BigDecimal("10.00"), orderService.findById(1L).getTotalPrice());
+    }
+
+    private void order(Long id, Long customerId, String status, LocalDateTime createdAt) {
+        jdbcTemplate.update("INSERT INTO orders (id, customer_id, status, created_at, total_price) VALUES (?, ?, ?, ?, 10)",
+                id, customerId, status, createdAt);
+        jdbcTemplate.update("INSERT INTO order_items (order_id, product_id, unit_price, quantity, total_price) " +
+                "VALUES (?, ?, 10, 1, 10)", id, productId);
+    }
+}
@@ -0,0 +1,133 @@
+package com.codewithmosh.store.orders;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+// un sink che fallisce sempre o una sola volta per certi ordini, e uno che registra l ordine di consegna
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@DirtiesContext // i dati sono committati: il prossimo test parte da un database nuovo
+@TestPropertySource(properties = {"spring.flyway.enabled=false", "spring.jpa.hibernate.ddl-auto=create-drop"})
+class OrderEventRelayTests {
+
+    @Autowired
+    private OrderEventRepository orderEventRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final List<Long> delivered = new ArrayList<>();
+    private final Set<Long> failOnce = new HashSet<>();
+    private final Set<Long> failAlways = new HashSet<>();
+
+    private OrderEventRelay relay;
+
+    @BeforeEach
+    void setUp() {
+        orderEventRepository.deleteAll();
+        OrderEventSink flaky = event -> {
+            if (failAlways.contains(event.getOrderId()) || failOnce.remove(event.getOrderId()))
+                throw new IllegalStateException("sink down");
+        };
+        OrderEventSink recorder = event -> delivered.add(event.getEventId());
+        relay = new OrderEventRelay(orderEventRepository, List.of(flaky, recorder), transactionManager,
+                new SimpleMeterRegistry(), 100, 2, Duration.ZERO, Duration.ofDays(7));
+    }
+
+    @Test
+    void aFailedEventHoldsBackLaterEventsOfTheSameOrderOnly() {
+        var created1 = event(1L, OrderEventType.CREATED);
+        var created2 = event(2L, OrderEventType.CREATED);
+        var paid1 = event(1L, OrderEventType.STATUS_CHANGED);
+        failOnce.add(1L);
+
+        relay.relay();
+        assertEquals(List.of(created2), delivered);
+
+        relay.relay();
+        assertEquals(List.of(created2, created1, paid1), delivered);
+        assertEquals(0, orderEventRepository.countPending());
+    }
+
+    @Test
+    void afterMaxAttemptsTheOrderIsBlockedUntilAnOperatorRequeuesTheEvent() {
+        var created = event(9L, OrderEventType.CREATED);
+        var paid = event(9L, OrderEventType.STATUS_CHANGED);
+        var other = event(10L, OrderEventType.CREATED);
+        failAlways.add(9L);
+
+        relay.relay();
+        relay.relay();
+        assertNotNull(orderEventRepository.findById(created).orElseThrow().getFailedAt());
+
+        failAlways.clear();
+        relay.relay();
+        assertEquals(List.of(other), delivered); // paid resta fermo dietro created
+        assertEquals(1, orderEventRepository.countBlockedOrders());
+        assertEquals(0, orderEventRepository.countPending());
+
+        var failed = orderEventRepository.findById(created).orElseThrow();
+        failed.setFailedAt(null);
+        failed.setAttempts(0);
+        failed.setNextAttemptAt(null);
+        orderEventRepository.save(failed);
+        relay.relay();
+        assertEquals(List.of(other, created, paid), delivered);
+    }
+
+    @Test
+    void purgesOldEventsButKeepsTheOnesBlockingAnOrder() {
+        var old = LocalDateTime.now().minusDays(30);
+        var published = event(1L, OrderEventType.CREATED);
+        var recent = event(2L, OrderEventType.CREATED);
+        var failedAlone = event(3L, OrderEventType.CREATED);
+        var failedBlocking = event(4L, OrderEventType.CREATED);
+        var held = event(4L, OrderEventType.STATUS_CHANGED);
+        update(published, event -> event.setPublishedAt(old));
+        update(recent, event -> event.setPublishedAt(LocalDateTime.now()));
+        update(failedAlone, event -> event.setFailedAt(old));
+        update(failedBlocking, event -> event.setFailedAt(old));
+
+        relay.purge();
+
+        var remaining = orderEventRepository.findAll().stream().map(OrderEvent::getId).sorted().toList();
+        assertEquals(List.of(recent, failedBlocking, held), remaining);
+    }
+
+    private void update(Long eventId, Consumer<OrderEvent> change) {
+        var event = orderEventRepository.findById(eventId).orElseThrow();
+        change.accept(event);
+        orderEventRepository.save(event);
+    }
+
+    private Long event(Long orderId, OrderEventType type) {
+        var event = new OrderEvent();
+        event.setOrderId(orderId);
+        event.setCustomerId(1L);
+        event.setType(type);
+        event.setStatus(PaymentStatus.PENDING);
+        event.setTotalPrice(BigDecimal.TEN);
+        event.setCreatedAt(LocalDateTime.now());
+        return orderEventRepository.save(event).getId();
+    }
+}
@@ -0,0 +1,121 @@
+package com.codewithmosh.store.orders;
+
+import com.codewithmosh.store.products.Category;
+import com.codewithmosh.store.products.Product;
+import com.codewithmosh.store.users.Role;
+import com.codewithmosh.store.users.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.Limit;
+import org.springframework.test.context.TestPropertySource;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// created_at lo genera il database: gli ordini sono inseriti con sql nativo per controllare le date
+@DataJpaTest
+@TestPropertySource(properties = {"spring.flyway.enabled=false", "spring.jpa.hibernate.ddl-auto=create-drop"})
+class OrderRepositoryTests {
+
+    private static final LocalDateTime MIN = LocalDateTime.of(1970, 1, 1, 0, 0);
+    private static final LocalDateTime MAX = LocalDateTime.of(9999, 12, 31, 0, 0);
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    private Long customerId;
+
+    @BeforeEach
+    void setUp() {
+        customerId = customer("a@example.com");
+        var otherId = customer("b@example.com");
+
+        order(1L, customerId, "PAID", "2024-01-10T10:00");
+        order(2L, customerId, "PENDING", "2024-02-10T10:00");
+        order(3L, customerId, "PAID", "2024-03-10T10:00");
+        order(4L, customerId, "PAID", "2024-03-10T10:00"); // stessa data: decide l id
+        order(5L, customerId, "FAILED", "2024-04-10T10:00");
+        order(6L, otherId, "PAID", "2024-05-10T10:00");
+
+        var category = entityManager.persist(new Category("books"));
+        var book = entityManager.persist(Product.builder()
+                .name("book").description("description").price(new BigDecimal("10.00")).category(category).build());
+        var pen = entityManager.persist(Product.builder()
+                .name("pen").description("description").price(new BigDecimal("1.00")).build());
+        item(1L, book.getId(), 2, "20.00");
+        item(1L, pen.getId(), 3, "3.00");
+        item(2L, book.getId(), 1, "10.00");
+        item(3L, pen.getId(), 1, "1.00");
+    }
+
+    @Test
+    void walksTheHistoryNewestFirstWithoutGapsOrDuplicates() {
+        assertEquals(List.of(5L, 4L, 3L, 2L, 1L), walk(null, MIN, MAX, 2));
+    }
+
+    @Test
+    void filtersByStatusAndDateRange() {
+        assertEquals(List.of(4L, 3L, 1L), walk(PaymentStatus.PAID, MIN, MAX, 2));
+        assertEquals(List.of(4L, 3L, 2L),
+                walk(null, LocalDateTime.of(2024, 2, 1, 0, 0), LocalDateTime.of(2024, 4, 1, 0, 0), 2));
+    }
+
+    @Test
+    void findsAnOrderOnlyForItsOwner() {
+        assertEquals(1, orderRepository.findViewsByIdAndCustomerId(3L, customerId).size());
+        assertEquals(0, orderRepository.findViewsByIdAndCustomerId(6L, customerId).size());
+    }
+
+    private List<Long> walk(PaymentStatus status, LocalDateTime from, LocalDateTime before, int pageSize) {
+        var ids = new ArrayList<Long>();
+        var lastId = 0L;
+        while (true) {
+            var page = orderRepository.findPageByCustomerId(customerId, status, from, before, lastId, Limit.of(pageSize));
+            page.forEach(order -> ids.add(order.getId()));
+            if (page.size() < pageSize)
+                return ids;
+            var last = page.get(page.size() - 1);
+            before = last.getCreatedAt();
+            lastId = last.getId();
+        }
+    }
+
+    private Long customer(String email) {
+        return entityManager.persistAndGetId(User.builder()
+                .name("customer")
+                .email(email)
+                .password("password")
+                .role(Role.USER)
+                .build(), Long.class);
+    }
+
+    private void item(Long orderId, Long productId, int quantity, String totalPrice) {
+        entityManager.getEntityManager().createNativeQuery(
+                        "INSERT INTO order_items (order_id, product_id, unit_price, quantity, total_price) VALUES (?, ?, 0, ?, ?)")
+                .setParameter(1, orderId)
+                .setParameter(2, productId)
+                .setParameter(3, quantity)
+                .setParameter(4, new BigDecimal(totalPrice))
+                .executeUpdate();
+    }
+
+    private void order(Long id, Long customerId, String status, String createdAt) {
+        entityManager.getEntityManager().createNativeQuery(
+                        "INSERT INTO orders (id, customer_id, status, created_at, total_price) VALUES (?, ?, ?, ?, 10)")
+                .setParameter(1, id)
+                .setParameter(2, customerId)
+                .setParameter(3, status)
+                .setParameter(4, LocalDateTime.parse(createdAt))
+                .executeUpdate();
+    }
+}
@@ -0,0 +1,164 @@
+package com.codewithmosh.store.orders;
+
+import com.codewithmosh.store.products.Category;
+import com.codewithmosh.store.products.CategoryRepository;
+import com.codewithmosh.store.products.Product;
+import com.codewithmosh.store.products.ProductRepository;
+import com.codewithmosh.store.users.Role;
+import com.codewithmosh.store.users.User;
+import com.codewithmosh.store.users.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+// H2 in modalità MySQL per gli upsert ON DUPLICATE KEY; le tabelle degli aggregati (e il backfill) arrivano da V13.
+// ogni test riparte da un database nuovo, perché la migrazione si può eseguire una volta sola
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(SalesRollup.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+@TestPropertySource(properties = {
+        "spring.flyway.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.datasource.url=jdbc:h2:mem:sales;MODE=MySQL",
+        "spring.datasource.username=sa",
+        "spring.datasource.password="
+})
+class SalesRollupTests {
+
+    private static final LocalDate DAY = LocalDate.of(2024, 1, 10);
+
+    @Autowired
+    private SalesRollup rollup;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    private JdbcTemplate jdbcTemplate;
+    private Byte categoryId;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        var customerId = userRepository.save(User.builder()
+                .name("customer").email("customer@example.com").password("password").role(Role.USER).build()).getId();
+        // nella stessa transazione: il prodotto fa cascade sulla categoria, che non deve essere detached
+        var book = new TransactionTemplate(transactionManager).execute(status -> {
+            var category = categoryRepository.save(new Category("books"));
+            return productRepository.save(Product.builder()
+                    .name("book").description("description").price(new BigDecimal("10.00")).category(category).build());
+        });
+        categoryId = book.getCategory().getId();
+        var pen = productRepository.save(Product.builder()
+                .name("pen").description("description").price(new BigDecimal("1.00")).build());
+
+        order(1L, customerId, "PAID");
+        item(1L, pen.getId(), 5, "5.00");
+        order(2L, customerId, "PENDING");
+        item(2L, book.getId(), 2, "20.00");
+
+        new ResourceDatabasePopulator(new ClassPathResource("db/migration/V13__add_sales_rollup_tables.sql"))
+                .execute(dataSource);
+    }
+
+    @Test
+    void paymentAddsRevenueAndRefundRemovesIt() {
+        // dal backfill della migrazione
+        assertEquals(1L, rollup.getOrderCounts().get(PaymentStatus.PAID));
+        assertEquals(1L, rollup.getOrderCounts().get(PaymentStatus.PENDING));
+        assertEquals(new BigDecimal("5.00"), rollup.getRevenue(DAY, DAY).get(0).getTotalPrice());
+
+        changeStatus(2L, PaymentStatus.PAID);
+
+        var day = rollup.getRevenue(DAY, DAY).get(0);
+        assertEquals(new BigDecimal("25.00"), day.getTotalPrice());
+        assertEquals(Arrays.asList(categoryId, null),
+                day.getCategories().stream().map(CategoryRevenueDto::getCategoryId).toList());
+        assertEquals(2L, rollup.getOrderCounts().get(PaymentStatus.PAID));
+        assertEquals(0L, rollup.getOrderCounts().get(PaymentStatus.PENDING));
+        assertEquals("book", rollup.getTopProducts(1, false).get(0).getName());
+        assertEquals("pen", rollup.getTopProducts(1, true).get(0).getName());
+
+        changeStatus(2L, PaymentStatus.CANCELED);
+
+        day = rollup.getRevenue(LocalDate.of(2024, 1, 1), LocalDate.of(2024, 1, 31)).get(0);
+        assertEquals(new BigDecimal("5.00"), day.getTotalPrice());
+        assertEquals(List.of("pen"), rollup.getTopProducts(10, false).stream().map(ProductSalesDto::getName).toList());
+    }
+
+    // gli aggregati fanno parte della transazione dell ordine
+    @Test
+    void rolledBackOrdersAreNotCounted() {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            var order = new Order();
+            order.setStatus(PaymentStatus.PENDING);
+            rollup.orderCreated(order);
+            status.setRollbackOnly();
+        });
+
+        assertEquals(1L, rollup.getOrderCounts().get(PaymentStatus.PENDING));
+    }
+
+    @Test
+    void rejectsAnInvertedRange() {
+        assertThrows(InvalidReportRangeException.class, () -> rollup.getRevenue(DAY, DAY.minusDays(1)));
+    }
+
+    private void changeStatus(Long orderId, PaymentStatus status) {
+        new TransactionTemplate(transactionManager).executeWithoutResult(tx -> {
+            var order = orderRepository.findById(orderId).orElseThrow();
+            var previous = order.getStatus();
+            order.setStatus(status);
+            rollup.statusChanged(order, previous);
+        });
+    }
+
+    // created_at lo genera il database: ordini e item sono inseriti con sql nativo
+    private void order(Long id, Long customerId, String status) {
+        jdbcTemplate.update("INSERT INTO orders (id, customer_id, status, created_at, total_price) VALUES (?, ?, ?, ?, 10)",
+                id, customerId, status, DAY.atTime(12, 0));
+    }
+
+    private void item(Long orderId, Long productId, int quantity, String totalPrice) {
+        jdbcTemplate.update("INSERT INTO order_items (order_id, product_id, unit_price, quantity, total_price) VALUES (?, ?, 0, ?, ?)",
+                orderId, productId, quantity, new BigDecimal(totalPrice));
+    }
+}
@@ -0,0 +1,96 @@
+package com.codewithmosh.store.products;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class AbstractProductIndexTests {
+
+    // indice minimo: id -> nome
+    private static class NameIndex extends AbstractProductIndex<Map<Long, String>> {
+        NameIndex() {
+            super(new TreeMap<>());
+        }
+
+        @Override
+        protected Map<Long, String> newState() {
+            return new TreeMap<>();
+        }
+
+        @Override
+        protected void put(Map<Long, String> state, Product product) {
+            state.put(product.getId(), product.getName());
+        }
+
+        @Override
+        protected void remove(Map<Long, String> state, Long productId) {
+            state.remove(productId);
+        }
+
+        Map<Long, String> names() {
+            return state();
+        }
+    }
+
+    private NameIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new NameIndex();
+        index.put(product(1L, "old"));
+        index.put(product(2L, "removed"));
+    }
+
+    @Test
+    void readsSeeTheOldStateUntilCommit() {
+        var rebuild = index.rebuild();
+        rebuild.put(product(1L, "reloaded"));
+        assertEquals(Map.of(1L, "old", 2L, "removed"), index.names());
+
+        rebuild.commit();
+        assertEquals(Map.of(1L, "reloaded"), index.names());
+    }
+
+    // le righe lette dal db prima di una scrittura sono piu vecchie: la ricostruzione tiene la scrittura
+    @Test
+    void writesDuringARebuildWinOverReloadedRows() {
+        var rebuild = index.rebuild();
+        index.put(product(1L, "renamed"));
+        index.remove(3L);
+        rebuild.put(product(1L, "stale"));
+        rebuild.put(product(3L, "deleted meanwhile"));
+        rebuild.put(product(4L, "new"));
+        rebuild.commit();
+
+        assertEquals(Map.of(1L, "renamed", 4L, "new"), index.names());
+    }
+
+    @Test
+    void aDiscardedOrSupersededRebuildChangesNothing() {
+        var discarded = index.rebuild();
+        discarded.put(product(9L, "discarded"));
+        discarded.discard();
+        discarded.commit();
+        assertEquals(Map.of(1L, "old", 2L, "removed"), index.names());
+
+        var superseded = index.rebuild();
+        var latest = index.rebuild();
+        superseded.put(product(8L, "superseded"));
+        latest.put(product(7L, "latest"));
+        superseded.commit();
+        assertEquals(Map.of(1L, "old", 2L, "removed"), index.names());
+
+        latest.commit();
+        latest.discard(); // come nel finally di ProductIndexLoader: dopo il commit non fa nulla
+        assertEquals(Map.of(7L, "latest"), index.names());
+    }
+
+    private static Product product(Long id, String name) {
+        return Product.builder().id(id).name(name).price(BigDecimal.ONE).build();
+    }
+}
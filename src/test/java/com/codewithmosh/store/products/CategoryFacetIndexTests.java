@@ -0,0 +1,70 @@
+package com.codewithmosh.store.products;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class CategoryFacetIndexTests {
+
+    private CategoryFacetIndex index;
+
+    @BeforeEach
+    void setUp() {
+        var categoryRepository = mock(CategoryRepository.class);
+        when(categoryRepository.findAll()).thenReturn(List.of(category(1, "books"), category(2, "games"),
+                category(200, "toys")));
+        index = new CategoryFacetIndex(categoryRepository);
+        var rebuild = index.rebuild();
+        rebuild.commit();
+    }
+
+    @Test
+    void countsFollowProductsMovingBetweenCategories() {
+        index.put(product(1L, 1));
+        index.put(product(2L, 1));
+        index.put(product(3L, 2));
+        assertEquals(List.of(2, 1, 0), counts());
+
+        index.put(product(1L, 2));
+        assertEquals(List.of(1, 2, 0), counts());
+
+        index.put(product(2L, null)); // senza categoria non conta da nessuna parte
+        index.remove(3L);
+        assertEquals(List.of(0, 1, 0), counts());
+    }
+
+    // gli id sopra 127 sono byte negativi: finiscono comunque nel loro slot
+    @Test
+    void handlesUnsignedCategoryIds() {
+        index.put(product(1L, 200));
+        index.put(product(1L, 200));
+
+        assertEquals(List.of(0, 0, 1), counts());
+        assertEquals((byte) 200, index.getCategories().get(2).getId());
+    }
+
+    private List<Integer> counts() {
+        return index.getCategories().stream().map(CategoryDto::getProductCount).toList();
+    }
+
+    private static Category category(int id, String name) {
+        var category = new Category((byte) id);
+        category.setName(name);
+        return category;
+    }
+
+    private static Product product(Long id, Integer categoryId) {
+        return Product.builder()
+                .id(id)
+                .name("product " + id)
+                .price(BigDecimal.ONE)
+                .category(categoryId != null ? new Category(categoryId.byteValue()) : null)
+                .build();
+    }
+}
@@ -0,0 +1,45 @@
+package com.codewithmosh.store.products;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CsvRecordReaderTests {
+
+    @Test
+    void readsQuotedFieldsWithCommasQuotesAndNewlines() throws IOException {
+        var csv = new CsvRecordReader(new StringReader(
+                "name,description\r\n" +
+                "\"Lamp, red\",\"the \"\"best\"\" one\"\r\n" +
+                "Desk,\"two\nlines\"\n" +
+                "\"\",empty quoted"));
+
+        assertEquals(List.of("name", "description"), csv.readRecord());
+        assertEquals(List.of("Lamp, red", "the \"best\" one"), csv.readRecord());
+        assertEquals(List.of("Desk", "two\nlines"), csv.readRecord());
+        assertEquals(List.of("", "empty quoted"), csv.readRecord()); // ultima riga senza a capo
+        assertNull(csv.readRecord());
+    }
+
+    // una virgoletta in mezzo a un campo non quotato resta un carattere qualsiasi
+    @Test
+    void keepsQuotesInsideUnquotedFields() throws IOException {
+        var csv = new CsvRecordReader(new StringReader("12\" screen,,x\n"));
+
+        assertEquals(List.of("12\" screen", "", "x"), csv.readRecord());
+        assertNull(csv.readRecord());
+    }
+
+    @Test
+    void failsOnAnUnterminatedQuotedField() {
+        var csv = new CsvRecordReader(new StringReader("\"Lamp,red\n"));
+
+        assertThrows(IOException.class, csv::readRecord);
+    }
+}
@@ -0,0 +1,45 @@
+package com.codewithmosh.store.products;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ProductCursorTests {
+
+    @Test
+    void decodesWhatItEncodes() {
+        var cursor = ProductCursor.decode(new ProductCursor(ProductSort.NAME, "a|b", 7L).encode(), ProductSort.NAME);
+        assertEquals("a|b", cursor.getKey()); // il separatore nel nome non confonde il parsing
+        assertEquals(7L, cursor.getLastId());
+
+        var price = ProductCursor.decode(ProductCursor.afterPrice(ProductSort.PRICE, 1999, 3).encode(), ProductSort.PRICE);
+        assertEquals(1999, price.getCentsKey());
+        assertEquals(3L, price.getLastId());
+    }
+
+    @Test
+    void rejectsMalformedCursors() {
+        assertThrows(InvalidCursorException.class, () -> ProductCursor.decode("not base64!", ProductSort.ID));
+        assertThrows(InvalidCursorException.class, () -> ProductCursor.decode(raw("ID|5"), ProductSort.ID));
+        assertThrows(InvalidCursorException.class, () -> ProductCursor.decode(raw("ID||x"), ProductSort.ID));
+        assertThrows(InvalidCursorException.class, () -> ProductCursor.decode(raw("SIZE||5"), ProductSort.ID));
+        assertThrows(InvalidCursorException.class, () -> ProductCursor.decode(raw("PRICE|cheap|5"), ProductSort.PRICE));
+    }
+
+    // un cursore di un altro ordinamento porterebbe a una pagina sbagliata
+    @Test
+    void rejectsACursorOfAnotherSort() {
+        var cursor = ProductCursor.afterPrice(ProductSort.PRICE, 1000, 1).encode();
+
+        assertThrows(InvalidCursorException.class, () -> ProductCursor.decode(cursor, ProductSort.PRICE_DESC));
+        assertThrows(InvalidCursorException.class, () -> ProductCursor.decode(cursor, ProductSort.NAME));
+    }
+
+    private static String raw(String decoded) {
+        return Base64.getUrlEncoder().encodeToString(decoded.getBytes(StandardCharsets.UTF_8));
+    }
+}
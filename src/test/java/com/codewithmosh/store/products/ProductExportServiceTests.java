@@ -0,0 +1,63 @@
+package com.codewithmosh.store.products;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.TestPropertySource;
+
+import javax.sql.DataSource;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@DataJpaTest
+@TestPropertySource(properties = {"spring.flyway.enabled=false", "spring.jpa.hibernate.ddl-auto=create-drop"})
+class ProductExportServiceTests {
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Test
+    void everyProductIsOneLine() throws IOException {
+        var lamp = save("Lamp", "19.90");
+        var desk = save("Desk", "120.00");
+
+        var expected = "{\"id\":" + lamp + ",\"name\":\"Lamp\",\"description\":\"d\",\"price\":19.9,\"categoryId\":null}\n" +
+                "{\"id\":" + desk + ",\"name\":\"Desk\",\"description\":\"d\",\"price\":120.0,\"categoryId\":null}\n";
+        assertEquals(expected, export(false));
+        assertEquals(expected, export(true));
+    }
+
+    @Test
+    void anEmptyCatalogIsAnEmptyFile() throws IOException {
+        assertEquals("", export(false));
+        assertEquals("", export(true));
+    }
+
+    private Long save(String name, String price) {
+        return productRepository.saveAndFlush(Product.builder()
+                .name(name)
+                .description("d")
+                .price(new BigDecimal(price))
+                .build()).getId();
+    }
+
+    private String export(boolean gzip) throws IOException {
+        var out = new ByteArrayOutputStream();
+        new ProductExportService(dataSource, new ObjectMapper()).exportNdjson(out, gzip);
+        if (!gzip)
+            return out.toString(StandardCharsets.UTF_8);
+        try (var in = new GZIPInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.codewithmosh.store.products;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.TestPropertySource;
+
+import javax.sql.DataSource;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// le righe valide vengono importate, quelle errate finiscono nel report con il loro numero di riga
+@DataJpaTest
+@TestPropertySource(properties = {"spring.flyway.enabled=false", "spring.jpa.hibernate.ddl-auto=create-drop"})
+class ProductImportServiceTests {
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    private final ProductSearchIndex searchIndex = new ProductSearchIndex();
+
+    private ProductImportService service;
+    private Category books;
+
+    @BeforeEach
+    void setUp() {
+        books = categoryRepository.save(new Category("books"));
+        service = new ProductImportService(dataSource, categoryRepository, List.of(searchIndex), new ObjectMapper());
+    }
+
+    @Test
+    void csvRowsAreValidatedOneByOne() throws IOException {
+        var report = service.importCsv(stream(
+                "name,price,categoryId,description\n" +
+                "Lamp,19.90," + books.getId() + ",\"red, tall\"\n" +
+                ",5.00,,\n" +
+                "Desk,-1,,\n" +
+                "Chair,10.00,99,\n" +
+                "\n" +
+                "Shelf,cheap,,\n" +
+                "Rug,99999999.99,,\n" +
+                "Sofa,,,\n" +
+                "Stool,4.995,,\n" +
+                "Bench,7.500,,\n"));
+
+        assertEquals(3, report.getImported());
+        assertEquals(6, report.getFailed());
+        assertEquals(List.of(2L, 3L, 4L, 6L, 8L, 9L), rows(report));
+        assertEquals("price must have at most 2 decimals", report.getErrors().get(5).getError());
+        assertEquals(List.of("name is required", "price out of range", "category 99 not found"),
+                report.getErrors().subList(0, 3).stream().map(ProductImportErrorDto::getError).toList());
+
+        var lamp = productRepository.findAll().stream().filter(p -> p.getName().equals("Lamp")).findFirst().orElseThrow();
+        assertEquals("red, tall", lamp.getDescription());
+        assertEquals(new BigDecimal("19.90"), lamp.getPrice());
+    }
+
+    // le righe importate entrano negli indici con l id generato dal database
+    @Test
+    void importedRowsAreIndexedWithTheirGeneratedIds() throws IOException {
+        service.importNdjson(stream("{\"name\":\"Lamp\",\"price\":19.90}\n{\"name\":\"Desk lamp\",\"price\":40}\n"));
+
+        var ids = productRepository.findAll().stream().map(Product::getId).sorted().toList();
+        var hits = searchIndex.search("lamp", null, 0, 10).getItems().stream().map(ProductSearchHitDto::getId).sorted().toList();
+        assertEquals(2, ids.size());
+        assertEquals(ids, hits);
+    }
+
+    @Test
+    void ndjsonRowsAreValidatedOneByOne() throws IOException {
+        var report = service.importNdjson(stream(
+                "{\"name\":\"Lamp\",\"price\":19.90}\n" +
+                "\n" +
+                "{\"name\":\"" + "x".repeat(256) + "\",\"price\":1}\n" +
+                "{\"name\":\"Desk\",\"price\":\n" +
+                "{\"name\":\"Chair\",\"price\":5,\"categoryId\":" + books.getId() + "}\n"));
+
+        assertEquals(2, report.getImported());
+        assertEquals(List.of(3L, 4L), rows(report));
+        assertEquals("name must be at most 255 characters", report.getErrors().get(0).getError());
+        assertEquals(2, productRepository.count());
+    }
+
+    @Test
+    void anEmptyFileImportsNothing() throws IOException {
+        var report = service.importCsv(stream(""));
+
+        assertEquals(0, report.getImported());
+        assertEquals(0, report.getFailed());
+    }
+
+    private static ByteArrayInputStream stream(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static List<Long> rows(ProductImportReportDto report) {
+        return report.getErrors().stream().map(ProductImportErrorDto::getRow).toList();
+    }
+}
@@ -0,0 +1,99 @@
+package com.codewithmosh.store.products;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProductPriceIndexTests {
+
+    private ProductPriceIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new ProductPriceIndex();
+        index.put(product(1L, "10.00", (byte) 1));
+        index.put(product(2L, "25.00", (byte) 2));
+        index.put(product(3L, "25.00", (byte) 1));
+        index.put(product(4L, "40.50", (byte) 1));
+        index.put(product(5L, "99.99", null));
+    }
+
+    @Test
+    void ascendingPagesFollowTheCursor() {
+        var first = index.find(null, null, null, false, null, null, 2);
+        assertEquals(List.of(1L, 2L), first.productIds());
+        assertTrue(first.hasMore());
+
+        // stesso prezzo: il cursore riparte dall id successivo
+        var second = index.find(null, null, null, false, first.lastCents(), first.lastProductId(), 2);
+        assertEquals(List.of(3L, 4L), second.productIds());
+        assertTrue(second.hasMore());
+
+        var last = index.find(null, null, null, false, second.lastCents(), second.lastProductId(), 2);
+        assertEquals(List.of(5L), last.productIds());
+        assertFalse(last.hasMore());
+    }
+
+    @Test
+    void descendingPagesFollowTheCursor() {
+        var first = index.find(null, null, null, true, null, null, 2);
+        assertEquals(List.of(5L, 4L), first.productIds());
+        assertTrue(first.hasMore());
+
+        var second = index.find(null, null, null, true, first.lastCents(), first.lastProductId(), 2);
+        assertEquals(List.of(3L, 2L), second.productIds());
+
+        var last = index.find(null, null, null, true, second.lastCents(), second.lastProductId(), 2);
+        assertEquals(List.of(1L), last.productIds());
+        assertFalse(last.hasMore());
+    }
+
+    @Test
+    void boundsAreInclusive() {
+        var page = index.find(null, 2500L, 4050L, false, null, null, 10);
+        assertEquals(List.of(2L, 3L, 4L), page.productIds());
+        assertFalse(page.hasMore());
+
+        assertEquals(List.of(4L, 3L, 2L), index.find(null, 2500L, 4050L, true, null, null, 10).productIds());
+        assertEquals(List.of(), index.find(null, 5000L, 4000L, false, null, null, 10).productIds());
+    }
+
+    // un cursore fuori dall intervallo non allarga i limiti
+    @Test
+    void theCursorOnlyNarrowsTheRange() {
+        var page = index.find(null, 2500L, null, false, 1000L, 1L, 10);
+        assertEquals(List.of(2L, 3L, 4L, 5L), page.productIds());
+    }
+
+    @Test
+    void filtersByCategory() {
+        assertEquals(List.of(1L, 3L, 4L), index.find((byte) 1, null, null, false, null, null, 10).productIds());
+        assertEquals(List.of(3L), index.find((byte) 1, 2000L, 3000L, false, null, null, 10).productIds());
+        assertEquals(List.of(), index.find((byte) 9, null, null, false, null, null, 10).productIds());
+    }
+
+    @Test
+    void writesMoveTheEntry() {
+        index.put(product(1L, "50.00", (byte) 2));
+        index.remove(4L);
+
+        assertEquals(List.of(3L), index.find((byte) 1, null, null, false, null, null, 10).productIds());
+        assertEquals(List.of(2L, 1L), index.find((byte) 2, null, null, false, null, null, 10).productIds());
+        assertEquals(List.of(2L, 3L, 1L, 5L), index.find(null, null, null, false, null, null, 10).productIds());
+    }
+
+    private static Product product(Long id, String price, Byte categoryId) {
+        return Product.builder()
+                .id(id)
+                .name("product " + id)
+                .price(new BigDecimal(price))
+                .category(categoryId != null ? new Category(categoryId) : null)
+                .build();
+    }
+}
@@ -0,0 +1,112 @@
+package com.codewithmosh.store.products;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.Limit;
+import org.springframework.test.context.TestPropertySource;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// le query keyset ripartono dall ultima chiave letta: scorrendo tutte le pagine ogni prodotto compare una volta sola
+@DataJpaTest
+@TestPropertySource(properties = {
+        "spring.flyway.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.generate_statistics=true"})
+class ProductRepositoryTests {
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Category books;
+    private final List<Long> ids = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        books = entityManager.persist(new Category("books"));
+        var games = entityManager.persist(new Category("games"));
+        ids.add(product("delta", books));
+        ids.add(product("alpha", games));
+        ids.add(product("charlie", books));
+        ids.add(product("alpha", books));
+        ids.add(product("bravo", null));
+        entityManager.flush();
+    }
+
+    @Test
+    void pagesByIdResumeAfterTheLastId() {
+        var first = productRepository.findPageOrderById(null, 0L, Limit.of(2));
+        assertEquals(ids.subList(0, 2), ids(first));
+
+        var second = productRepository.findPageOrderById(null, first.get(1).getId(), Limit.of(2));
+        assertEquals(ids.subList(2, 4), ids(second));
+
+        var last = productRepository.findPageOrderById(null, second.get(1).getId(), Limit.of(2));
+        assertEquals(ids.subList(4, 5), ids(last));
+    }
+
+    @Test
+    void pagesByIdFilterByCategory() {
+        var page = productRepository.findPageOrderById(books.getId(), 0L, Limit.of(10));
+
+        assertEquals(List.of(ids.get(0), ids.get(2), ids.get(3)), ids(page));
+        assertEquals(books.getId(), page.get(0).getCategoryId());
+    }
+
+    // due "alpha": a parità di nome decide l id, e il cursore a meta dei due non salta ne ripete nulla
+    @Test
+    void pagesByNameBreakTiesById() {
+        var first = productRepository.findPageOrderByName(null, "", 0L, Limit.of(1));
+        assertEquals(List.of(ids.get(1)), ids(first));
+
+        var rest = productRepository.findPageOrderByName(null, first.get(0).getName(), first.get(0).getId(), Limit.of(10));
+        assertEquals(List.of(ids.get(3), ids.get(4), ids.get(2), ids.get(0)), ids(rest));
+
+        var inBooks = productRepository.findPageOrderByName(books.getId(), "alpha", ids.get(3), Limit.of(10));
+        assertEquals(List.of(ids.get(2), ids.get(0)), ids(inBooks));
+    }
+
+    // una sola query con le categorie, qualunque sia il numero di categorie diverse
+    @Test
+    void findsProductsWithTheirCategoriesInOneStatement() {
+        entityManager.clear();
+        var statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        var products = productRepository.findAllWithCategoryByIdIn(List.of(ids.get(0), ids.get(1), ids.get(4)));
+
+        assertEquals(3, products.size());
+        assertEquals(List.of("books", "games"), products.stream()
+                .filter(product -> product.getCategory() != null)
+                .map(product -> product.getCategory().getName()).sorted().toList());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    private Long product(String name, Category category) {
+        return entityManager.persist(Product.builder()
+                .name(name)
+                .description("description")
+                .price(BigDecimal.ONE)
+                .category(category)
+                .build()).getId();
+    }
+
+    private static List<Long> ids(List<ProductDto> products) {
+        return products.stream().map(ProductDto::getId).toList();
+    }
+}
@@ -0,0 +1,112 @@
+package com.codewithmosh.store.products;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProductSearchIndexTests {
+
+    private ProductSearchIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new ProductSearchIndex();
+    }
+
+    @Test
+    void tokenizesOnPunctuationWithoutAccentsOrCase() {
+        assertEquals(List.of("citta", "bike", "29", "usb", "c"), ProductText.tokenize("Città-Bike, 29\" USB_C!"));
+
+        index.put(product(1L, "Città-Bike", "telaio in alluminio", null));
+        assertEquals(List.of(1L), ids(index.search("CITTA", null, 0, 10)));
+        assertEquals(List.of(1L), ids(index.search("bike!", null, 0, 10)));
+        assertEquals(List.of(), ids(index.search("cittabike", null, 0, 10)));
+    }
+
+    @Test
+    void nameMatchesOutrankDescriptionMatches() {
+        index.put(product(1L, "Lampada", "da tavolo", null));
+        index.put(product(2L, "Tavolo", "in legno", null));
+
+        assertEquals(List.of(2L, 1L), ids(index.search("tavolo", null, 0, 10)));
+    }
+
+    @Test
+    void rarerTermsWeighMore() {
+        index.put(product(1L, "Cuscino rosso", "soggiorno", null));
+        index.put(product(2L, "Tappeto rosso", "soggiorno", null));
+        index.put(product(3L, "Divano blu", "soggiorno", null));
+
+        // divano compare in un solo prodotto, rosso in due; a parità di punteggio vince l id piu basso
+        assertEquals(List.of(3L, 1L, 2L), ids(index.search("rosso divano", null, 0, 10)));
+    }
+
+    @Test
+    void shorterDocumentsScoreHigher() {
+        index.put(product(1L, "Sedia", "legno massello di quercia naturale", null));
+        index.put(product(2L, "Sedia", "legno", null));
+
+        var hits = index.search("sedia", null, 0, 10).getItems();
+        assertEquals(List.of(2L, 1L), hits.stream().map(ProductSearchHitDto::getId).toList());
+        assertTrue(hits.get(0).getScore() > hits.get(1).getScore());
+    }
+
+    @Test
+    void filtersByCategoryBeforeCounting() {
+        index.put(product(1L, "Lampada terra", "", (byte) 1));
+        index.put(product(2L, "Lampada tavolo", "", (byte) 2));
+        index.put(product(3L, "Lampada led", "", (byte) 1));
+
+        var page = index.search("lampada", (byte) 1, 0, 10);
+        assertEquals(List.of(1L, 3L), ids(page));
+        assertEquals(2, page.getTotal());
+    }
+
+    @Test
+    void pagesKeepTheTotalOfAllMatches() {
+        for (var id = 1L; id <= 5; id++)
+            index.put(product(id, "Tazza", "ceramica", null));
+
+        var second = index.search("tazza", null, 1, 2);
+        assertEquals(List.of(3L, 4L), ids(second));
+        assertEquals(5, second.getTotal());
+
+        var past = index.search("tazza", null, 3, 2);
+        assertEquals(List.of(), ids(past));
+        assertEquals(5, past.getTotal());
+    }
+
+    // un prodotto aggiornato riusa la sua posizione e non si trova piu con i vecchi termini
+    @Test
+    void updatesAndRemovalsReplaceThePostings() {
+        index.put(product(1L, "Tazza", "ceramica", null));
+        index.put(product(2L, "Piatto", "ceramica", null));
+        index.put(product(1L, "Bicchiere", "vetro", null));
+        index.remove(2L);
+
+        assertEquals(List.of(), ids(index.search("tazza ceramica", null, 0, 10)));
+        assertEquals(List.of(1L), ids(index.search("bicchiere", null, 0, 10)));
+
+        index.put(product(3L, "Bicchiere", "cristallo", null));
+        assertEquals(2, index.search("bicchiere", null, 0, 10).getTotal());
+    }
+
+    private static List<Long> ids(ProductSearchPageDto page) {
+        return page.getItems().stream().map(ProductSearchHitDto::getId).toList();
+    }
+
+    private static Product product(Long id, String name, String description, Byte categoryId) {
+        return Product.builder()
+                .id(id)
+                .name(name)
+                .description(description)
+                .price(BigDecimal.ONE)
+                .category(categoryId != null ? new Category(categoryId) : null)
+                .build();
+    }
+}
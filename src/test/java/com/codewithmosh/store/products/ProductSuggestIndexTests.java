@@ -0,0 +1,113 @@
+package com.codewithmosh.store.products;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// H2 in modalità MySQL per l upsert su product_views, la tabella arriva da V14
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@DirtiesContext // i dati sono committati: il prossimo test parte da un database nuovo
+@TestPropertySource(properties = {
+        "spring.flyway.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.datasource.url=jdbc:h2:mem:suggest;MODE=MySQL",
+        "spring.datasource.username=sa",
+        "spring.datasource.password="
+})
+class ProductSuggestIndexTests {
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("DROP TABLE IF EXISTS product_views");
+        new ResourceDatabasePopulator(new ClassPathResource("db/migration/V14__add_product_views.sql")).execute(dataSource);
+    }
+
+    // un prefisso con piu chiavi del tetto: il prodotto piu visto vince anche se in ordine alfabetico è l ultimo
+    @Test
+    void popularProductsAreFoundPastTheScanLimit() {
+        var index = new ProductSuggestIndex(jdbcTemplate);
+        for (long id = 1; id <= 3000; id++)
+            index.put(product(id, String.format("apple %04d", id)));
+        index.put(product(5000L, "azure lamp"));
+        index.recordView(5000L);
+
+        assertEquals(List.of(5000L, 1L), ids(index.suggest("a", 2)));
+        assertEquals(List.of(5000L), ids(index.suggest("lamp", 10)));
+    }
+
+    // le visualizzazioni finiscono su product_views e un indice nuovo (es. dopo un riavvio) le ritrova
+    @Test
+    void viewsSurviveARebuildOnAnotherInstance() {
+        var lamp = productRepository.save(Product.builder().name("lamp").description("d").price(BigDecimal.ONE).build());
+        var ladder = productRepository.save(Product.builder().name("ladder").description("d").price(BigDecimal.ONE).build());
+        var index = new ProductSuggestIndex(jdbcTemplate);
+        index.put(lamp);
+        index.put(ladder);
+        index.recordView(lamp.getId());
+        index.recordView(lamp.getId());
+        index.flushViews();
+        index.recordView(lamp.getId());
+        index.flushViews();
+
+        assertEquals(3L, jdbcTemplate.queryForObject("SELECT views FROM product_views WHERE product_id = ?",
+                Long.class, lamp.getId()));
+
+        var restarted = new ProductSuggestIndex(jdbcTemplate);
+        var rebuild = restarted.rebuild();
+        rebuild.put(ladder);
+        rebuild.put(lamp);
+        rebuild.commit();
+        assertEquals(List.of(lamp.getId(), ladder.getId()), ids(restarted.suggest("la", 10)));
+    }
+
+    // le chiavi confrontano il suffisso dalla parola in poi, senza copiarlo; a parità di testo decide l id
+    @Test
+    void keysCompareTheSuffixFromTheirWordStart() {
+        var desk = new ProductSuggestIndex.Key("oak desk", 4, 1L);
+        var lamp = new ProductSuggestIndex.Key("desk lamp", 5, 2L);
+        var deskLamp = new ProductSuggestIndex.Key("desk lamp", 0, 2L);
+
+        assertTrue(desk.compareTo(deskLamp) < 0); // "desk" è prefisso di "desk lamp": il piu corto viene prima
+        assertTrue(deskLamp.compareTo(lamp) < 0);
+        assertTrue(desk.compareTo(new ProductSuggestIndex.Key("desk", 0, 3L)) < 0);
+        assertEquals(0, desk.compareTo(new ProductSuggestIndex.Key("my desk", 3, 1L)));
+        assertTrue(deskLamp.startsWith("desk l"));
+        assertFalse(lamp.startsWith("desk"));
+    }
+
+    private static Product product(Long id, String name) {
+        return Product.builder().id(id).name(name).price(BigDecimal.ONE).build();
+    }
+
+    private static List<Long> ids(List<ProductSuggestionDto> suggestions) {
+        return suggestions.stream().map(ProductSuggestionDto::getId).toList();
+    }
+}